@@ -0,0 +1,180 @@
+; The results of a memoized function, by the values of its arguments. The table is an open
+;  addressing hash table, where a slot is empty if it has no value.
+;  { arity, entries, capacity, keys (arity for each slot), values (one for each slot) }
+%..Memo = type { i32, i32, i32, i32*, i8** }
+declare noalias i8* @calloc(i64, i64) nounwind
+
+; Hashes the arguments, one word at a time
+define private i32 @..memoHash(i32* %keys, i32 %arity) {
+entry:
+  br label %loop
+loop:
+  %i = phi i32 [ 0, %entry ], [ %next, %body ]
+  %h = phi i32 [ -2128831035, %entry ], [ %mixed, %body ]
+  %done = icmp eq i32 %i, %arity
+  br i1 %done, label %end, label %body
+body:
+  %at = getelementptr inbounds i32, i32* %keys, i32 %i
+  %k = load i32, i32* %at, align 4
+  %xored = xor i32 %h, %k
+  %mixed = mul i32 %xored, 16777619
+  %next = add nsw i32 %i, 1
+  br label %loop
+end:
+  %high = lshr i32 %h, 15
+  %spread = xor i32 %h, %high
+  ret i32 %spread
+}
+
+; Finds the slot which holds the arguments, or the empty slot where they would be put. The
+;  table must have some empty slot, and its capacity must be a power of two.
+define private i32 @..memoSlot(%..Memo* %t, i32* %keys) {
+entry:
+  %arityAt = getelementptr inbounds %..Memo, %..Memo* %t, i32 0, i32 0
+  %arity = load i32, i32* %arityAt, align 4
+  %capAt = getelementptr inbounds %..Memo, %..Memo* %t, i32 0, i32 2
+  %cap = load i32, i32* %capAt, align 4
+  %mask = sub nsw i32 %cap, 1
+  %keysAt = getelementptr inbounds %..Memo, %..Memo* %t, i32 0, i32 3
+  %slotKeys = load i32*, i32** %keysAt, align 8
+  %valuesAt = getelementptr inbounds %..Memo, %..Memo* %t, i32 0, i32 4
+  %values = load i8**, i8*** %valuesAt, align 8
+  %hash = call i32 @..memoHash(i32* %keys, i32 %arity)
+  %first = and i32 %hash, %mask
+  br label %probe
+probe:
+  %slot = phi i32 [ %first, %entry ], [ %nextSlot, %differ ]
+  %valueAt = getelementptr inbounds i8*, i8** %values, i32 %slot
+  %value = load i8*, i8** %valueAt, align 8
+  %empty = icmp eq i8* %value, null
+  br i1 %empty, label %found, label %compare
+compare:
+  %base = mul nsw i32 %slot, %arity
+  br label %cmpLoop
+cmpLoop:
+  %i = phi i32 [ 0, %compare ], [ %nextI, %same ]
+  %allSame = icmp eq i32 %i, %arity
+  br i1 %allSame, label %found, label %cmpKey
+cmpKey:
+  %wantAt = getelementptr inbounds i32, i32* %keys, i32 %i
+  %want = load i32, i32* %wantAt, align 4
+  %haveIdx = add nsw i32 %base, %i
+  %haveAt = getelementptr inbounds i32, i32* %slotKeys, i32 %haveIdx
+  %have = load i32, i32* %haveAt, align 4
+  %eq = icmp eq i32 %want, %have
+  %nextI = add nsw i32 %i, 1
+  br i1 %eq, label %same, label %differ
+same:
+  br label %cmpLoop
+differ:
+  %stepped = add nsw i32 %slot, 1
+  %nextSlot = and i32 %stepped, %mask
+  br label %probe
+found:
+  ret i32 %slot
+}
+
+; Finds the result saved for the arguments, or null if there is none
+define i8* @..memoFind(%..Memo* %t, i32* %keys) {
+entry:
+  %capAt = getelementptr inbounds %..Memo, %..Memo* %t, i32 0, i32 2
+  %cap = load i32, i32* %capAt, align 4
+  %none = icmp eq i32 %cap, 0
+  br i1 %none, label %missing, label %search
+missing:
+  ret i8* null
+search:
+  %slot = call i32 @..memoSlot(%..Memo* %t, i32* %keys)
+  %valuesAt = getelementptr inbounds %..Memo, %..Memo* %t, i32 0, i32 4
+  %values = load i8**, i8*** %valuesAt, align 8
+  %valueAt = getelementptr inbounds i8*, i8** %values, i32 %slot
+  %value = load i8*, i8** %valueAt, align 8
+  ret i8* %value
+}
+
+; Saves the result for the arguments, replacing any saved before. The table doubles in
+;  capacity whenever it would become more than half full.
+define void @..memoPut(%..Memo* %t, i32* %keys, i8* %value) {
+entry:
+  %arityAt = getelementptr inbounds %..Memo, %..Memo* %t, i32 0, i32 0
+  %arity = load i32, i32* %arityAt, align 4
+  %entriesAt = getelementptr inbounds %..Memo, %..Memo* %t, i32 0, i32 1
+  %entries = load i32, i32* %entriesAt, align 4
+  %capAt = getelementptr inbounds %..Memo, %..Memo* %t, i32 0, i32 2
+  %cap = load i32, i32* %capAt, align 4
+  %keysAt = getelementptr inbounds %..Memo, %..Memo* %t, i32 0, i32 3
+  %valuesAt = getelementptr inbounds %..Memo, %..Memo* %t, i32 0, i32 4
+  %after = add nsw i32 %entries, 1
+  %needed = mul nsw i32 %after, 2
+  %full = icmp sgt i32 %needed, %cap
+  br i1 %full, label %grow, label %insert
+grow:
+  %oldKeys = load i32*, i32** %keysAt, align 8
+  %oldValues = load i8**, i8*** %valuesAt, align 8
+  %isNew = icmp eq i32 %cap, 0
+  %doubled = mul nsw i32 %cap, 2
+  %newCap = select i1 %isNew, i32 64, i32 %doubled
+  %newCap64 = sext i32 %newCap to i64
+  %arity64 = sext i32 %arity to i64
+  %keyCount = mul nsw i64 %newCap64, %arity64
+  %newKeys = call i8* @calloc(i64 %keyCount, i64 4)
+  %newValues = call i8* @calloc(i64 %newCap64, i64 8)
+  %newKeysCast = bitcast i8* %newKeys to i32*
+  %newValuesCast = bitcast i8* %newValues to i8**
+  store i32* %newKeysCast, i32** %keysAt, align 8
+  store i8** %newValuesCast, i8*** %valuesAt, align 8
+  store i32 %newCap, i32* %capAt, align 4
+  store i32 0, i32* %entriesAt, align 4
+  br label %moveLoop
+moveLoop:
+  %i = phi i32 [ 0, %grow ], [ %nextI, %moveNext ]
+  %moved = icmp eq i32 %i, %cap
+  br i1 %moved, label %freeOld, label %moveOne
+moveOne:
+  %oldValueAt = getelementptr inbounds i8*, i8** %oldValues, i32 %i
+  %oldValue = load i8*, i8** %oldValueAt, align 8
+  %oldEmpty = icmp eq i8* %oldValue, null
+  br i1 %oldEmpty, label %moveNext, label %reinsert
+reinsert:
+  %oldBase = mul nsw i32 %i, %arity
+  %oldKeyAt = getelementptr inbounds i32, i32* %oldKeys, i32 %oldBase
+  call void @..memoPut(%..Memo* %t, i32* %oldKeyAt, i8* %oldValue)
+  br label %moveNext
+moveNext:
+  %nextI = add nsw i32 %i, 1
+  br label %moveLoop
+freeOld:
+  %oldKeysVoid = bitcast i32* %oldKeys to i8*
+  %oldValuesVoid = bitcast i8** %oldValues to i8*
+  call void @free(i8* %oldKeysVoid)
+  call void @free(i8* %oldValuesVoid)
+  br label %insert
+insert:
+  %slot = call i32 @..memoSlot(%..Memo* %t, i32* %keys)
+  %slotKeys = load i32*, i32** %keysAt, align 8
+  %values = load i8**, i8*** %valuesAt, align 8
+  %base = mul nsw i32 %slot, %arity
+  br label %copyLoop
+copyLoop:
+  %j = phi i32 [ 0, %insert ], [ %nextJ, %copyOne ]
+  %copied = icmp eq i32 %j, %arity
+  br i1 %copied, label %save, label %copyOne
+copyOne:
+  %fromAt = getelementptr inbounds i32, i32* %keys, i32 %j
+  %key = load i32, i32* %fromAt, align 4
+  %toIdx = add nsw i32 %base, %j
+  %toAt = getelementptr inbounds i32, i32* %slotKeys, i32 %toIdx
+  store i32 %key, i32* %toAt, align 4
+  %nextJ = add nsw i32 %j, 1
+  br label %copyLoop
+save:
+  %valueAt = getelementptr inbounds i8*, i8** %values, i32 %slot
+  %replaced = load i8*, i8** %valueAt, align 8
+  store i8* %value, i8** %valueAt, align 8
+  %added = icmp eq i8* %replaced, null
+  %addedCount = zext i1 %added to i32
+  %entriesNow = load i32, i32* %entriesAt, align 4
+  %entriesAfter = add nsw i32 %entriesNow, %addedCount
+  store i32 %entriesAfter, i32* %entriesAt, align 4
+  ret void
+}
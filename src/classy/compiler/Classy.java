@@ -6,6 +6,7 @@ import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -13,9 +14,13 @@ import java.util.Map;
 import java.util.Scanner;
 
 import classy.compiler.analyzing.Checker;
+import classy.compiler.analyzing.Evaluator;
 import classy.compiler.analyzing.Optimizer;
-import classy.compiler.lexing.Lexer;
+import classy.compiler.analyzing.Reachability;
+import classy.compiler.lexing.ByteSource;
+import classy.compiler.lexing.TableLexer;
 import classy.compiler.lexing.Token;
+import classy.compiler.lexing.TokenStream;
 import classy.compiler.parsing.Parser;
 import classy.compiler.parsing.Value;
 import classy.compiler.translation.Translator;
@@ -26,6 +31,11 @@ public class Classy {
 	public static final String VERBOSE = "verbose";
 	public static final String NO_OPT = "O0";
 	public static final String OUTPUT = "out";
+	public static final String INLINE = "inline";
+	public static final String INLINE_DEPTH = "inline-depth";
+	public static final String MEMO = "memo";
+	public static final String EVAL = "eval";
+	public static final String BOXED = "boxed";
 	
 	public static ArrayList<String> warnings = new ArrayList<>();
 	
@@ -47,6 +57,15 @@ public class Classy {
 			case "-save":
 				i = addFlag(SAVE, 0, flags, args, i);
 				break;
+			case "-eval":	// the most steps to evaluate a call at compile time
+				i = addFlag(EVAL, 1, flags, args, i);
+				break;
+			case "-memo":	// memoizes recursive functions
+				i = addFlag(MEMO, 0, flags, args, i);
+				break;
+			case "-boxed":	// keeps every integer and boolean in an object
+				i = addFlag(BOXED, 0, flags, args, i);
+				break;
 			case "-v":		// verbose- prints out execution information
 			case "-verbose":
 				i = addFlag(VERBOSE, 0, flags, args, i);
@@ -55,6 +74,12 @@ public class Classy {
 			case "-o":		// names the output
 				i = addFlag(OUTPUT, 1, flags, args, i);
 				break;
+			case "-inline":	// the largest function to inline
+				i = addFlag(INLINE, 1, flags, args, i);
+				break;
+			case "-inline-depth":	// how deeply inlined calls may nest
+				i = addFlag(INLINE_DEPTH, 1, flags, args, i);
+				break;
 			default:
 				if (pathName == null)
 					pathName = args[i];
@@ -63,27 +88,30 @@ public class Classy {
 			}
 		}
 		
-		List<String> lines = new ArrayList<>();
-		Scanner scan = null;
+		// The source is lexed straight from its bytes, without being split into lines
+		CharSequence source;
 		boolean verbose = flags.containsKey("verbose");
 		if (pathName == null) {
 			// We should get input from stdin
 			if (verbose)
 				System.out.println("Compiling from stdin...");
-			scan = new Scanner(System.in);
+			try {
+				source = ByteSource.read(System.in);
+			} catch (IOException e) {
+				throw new RuntimeException("Could not read from stdin!", e);
+			}
 		} else {
 			if (verbose)
 				System.out.println("Compiling \"" + pathName + "\"...");
 			try {
-				scan = new Scanner(new File(pathName));
-			} catch (FileNotFoundException e) {
+				source = ByteSource.map(new File(pathName));
+			} catch (NoSuchFileException e) {
 				throw new RuntimeException("Could not find file \"" + pathName + "\"!");
+			} catch (IOException e) {
+				throw new RuntimeException("Could not read file \"" + pathName + "\"!", e);
 			}
 		}
-		while(scan.hasNextLine())
-			lines.add(scan.nextLine());
-		scan.close();
-		if (lines.isEmpty())
+		if (source.length() == 0)
 			throw new RuntimeException("Empty input!");
 		
 		// remove the file extension from the path name. This will be the module name
@@ -99,7 +127,7 @@ public class Classy {
 			moduleName = flags.get(OUTPUT);
 		
 		try {
-			new Classy(moduleName, lines, flags);			
+			new Classy(moduleName, source, flags);			
 		}catch(CompileException e) {
 			printWarnings();
 			if (DEBUG)
@@ -144,6 +172,26 @@ public class Classy {
 		}
 	}
 	
+	/**
+	 * Finds the count given to the flag, which must be a non-negative integer. If it is not, the
+	 * bad value is reported and the default used instead.
+	 * @param flag the flag which may have been given
+	 * @param otherwise the default, used if the flag was not given (or was given badly)
+	 */
+	private static int countFlag(String flag, int otherwise, Map<String, String> flags) {
+		String value = flags.get(flag);
+		if (value == null)
+			return otherwise;
+		try {
+			int count = Integer.parseInt(value);
+			if (count >= 0)
+				return count;
+		}catch (NumberFormatException notCount) {}
+		System.err.println("Invalid argument to flag: " + flag + "! Expected a non-negative integer but found \"" +
+				value + "\".");
+		return otherwise;
+	}
+	
 	public static void printHelp() {
 		Scanner scan = null;
 		try {
@@ -157,15 +205,21 @@ public class Classy {
 	}
 	
 	public Classy(String moduleName, List<String> lines, Map<String, String> flags) {
-		Lexer lex = new Lexer(lines);
-		List<Token> tokens = lex.getTokens();
-		// strip the whitespace and comment tokens
-		// convert all new lines into semicolons, removing excess
-		cleanTokens(tokens);
+		this(moduleName, new TableLexer(lines), flags);
+	}
+	
+	public Classy(String moduleName, CharSequence source, Map<String, String> flags) {
+		this(moduleName, new TableLexer(source), flags);
+	}
+	
+	protected Classy(String moduleName, TableLexer lex, Map<String, String> flags) {
+		// The lexer has already stripped the whitespace and comment tokens, and converted
+		// all new lines into semicolons, removing excess
+		TokenStream tokens = lex.getTokenStream();
 		
 		boolean verbose = flags.containsKey(VERBOSE);
 		if (verbose) {
-			for(Token token: tokens)
+			for(Token token: tokens.asList())
 				System.out.println(token);
 			System.out.println();			
 		}
@@ -188,17 +242,33 @@ public class Classy {
 			System.out.println();
 		}
 		
+		Reachability reach = null;
 		if (optimize) {
-			new Optimizer(check, program);
+			int inlineSize = countFlag(INLINE, Optimizer.INLINE_SIZE, flags);
+			int inlineDepth = countFlag(INLINE_DEPTH, Optimizer.INLINE_DEPTH, flags);
+			int evalSteps = countFlag(EVAL, Evaluator.STEPS, flags);
+			Optimizer opt = new Optimizer(check, program, inlineSize, inlineDepth, evalSteps);
+			reach = opt.getReachability();
 			if (verbose) {
 				System.out.println("Optimized:");
 				System.out.println(program.pretty(0));
+				for (Map.Entry<String, Integer> stat: opt.getStats().entrySet())
+					System.out.println("  " + stat.getKey() + ": " + stat.getValue());
 				System.out.println();
 			}
 		}
 		
-		Translator translate = new Translator(program, check.getVariables(), check.getTypes());
+		// Integers and booleans are only kept in objects where they must be
+		boolean unbox = optimize && !flags.containsKey(BOXED);
+		Translator translate = new Translator(program, check.getVariables(), check.getTypes(), reach,
+				flags.containsKey(MEMO), unbox);
 		List<String> outLines = translate.getOutLines();
+		if (verbose) {
+			System.out.println("Translated:");
+			for (Map.Entry<String, Integer> stat: translate.getStats().entrySet())
+				System.out.println("  " + stat.getKey() + ": " + stat.getValue());
+			System.out.println();
+		}
 		// Output the lines to fileName.ll
 		FileWriter fw = null;
 		File ll = new File(moduleName + ".ll");
@@ -285,27 +355,5 @@ public class Classy {
 			e.printStackTrace();
 		}
 	}
-	
-	protected void cleanTokens(List<Token> tokens) {
-		boolean lastNewLine = true;
-		for(int i=0; i<tokens.size(); i++) {
-			Token token = tokens.get(i);
-			if (token.getType() == Token.Type.SPACE || token.getType() == Token.Type.COMMENT) {
-				tokens.remove(i);
-				i--;
-			}else if (token.getType() == Token.Type.NEW_LINE) {
-				if (lastNewLine) {
-					tokens.remove(i);
-					i--;
-				}else {
-					lastNewLine = true;
-					tokens.remove(i);
-					tokens.add(i, new Token(token.getValue(), Token.Type.SEMICOLON,
-							token.getLineNo(), token.getColNo()));
-				}
-			}else
-				lastNewLine = false;
-		}
-	}
 
 }
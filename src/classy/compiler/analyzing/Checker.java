@@ -50,7 +50,7 @@ public class Checker {
 		//  If there is only one usage of a variable, it can be replaced with the value.
 		// We also need to type check the entire program
 		
-		List<Frame> environment = new ArrayList<>();
+		Environment environment = new Environment();
 		Frame first = new Frame(null);
 		// Set all the default types
 		types.add(Type.Any);
@@ -58,11 +58,11 @@ public class Checker {
 		types.add(Type.Bool);
 		for (Type t: types)
 			first.makeType(t);
-		environment.add(first);
+		environment.push(first);
 		return check(program, environment);
 	}
 	
-	public Type check(Expression e, List<Frame> env) {
+	public Type check(Expression e, Environment env) {
 		// dispatch on the appropriate checking function
 		if (e instanceof Assignment)
 			return check((Assignment)e, env);
@@ -96,31 +96,7 @@ public class Checker {
 				//  eg "2 + 4 / 1" -> "2 + (4 / 1)", even though the plus is seen first.
 				// Also, we could not know whether each identifier was a function until
 				//  checking, which is why we do it now.
-				TreeSet<Float> precs = new TreeSet<>();
-				for (int i = 0; i < sub.size(); i++) {
-					Float prec = sub.get(i).getPrecedence();
-					if (prec != null)
-						precs.add(prec);
-				}
-				for (Float prec: precs) {
-					boolean tryAgain;
-					do {
-						tryAgain = false;
-						for (int i = 0; i < sub.size(); i++) {
-							Subexpression sexp = sub.get(i);
-							if (!sexp.isLink())
-								continue;
-							Float subPrec = sexp.getPrecedence();
-							if (subPrec == null)
-								continue;
-							if (sexp.getPrecedence().equals(prec)) {
-								sexp.evaluateChain(i, sub);
-								tryAgain = true;
-								break; // restart this precedence after the list has been modified
-							}
-						}
-					}while(tryAgain);
-				}
+				groupOperations(sub);
 			}
 			
 			// After all the grouping is complete, this value should not have more than one subexpression
@@ -137,6 +113,129 @@ public class Checker {
 			throw new CheckException("Unchecked expression: " + e);
 	}
 	
+	/**
+	 * Groups the operations in the list of subexpressions given (which must already have their
+	 * references checked) by precedence. A lower precedence binds tighter, and operations of
+	 * the same precedence are grouped from left to right.
+	 * <p>
+	 * Well-formed lists are grouped in one pass with an operator stack. Any other list is
+	 * grouped by precedence level instead, which finds the same error that it always has.
+	 * @param sub the subexpressions to group, which is modified in place
+	 */
+	protected void groupOperations(List<Subexpression> sub) {
+		if (!isWellFormed(sub)) {
+			groupByLevel(sub);
+			return;
+		}
+		
+		List<Subexpression> operands = new ArrayList<>();
+		List<Subexpression> operators = new ArrayList<>();
+		for (Subexpression sexp: sub) {
+			if (!sexp.isLink())
+				operands.add(sexp);
+			else if (sexp instanceof BinOp) {
+				// Everything which binds at least as tight as this is complete before it
+				float prec = sexp.getPrecedence();
+				while (!operators.isEmpty() &&
+						operators.get(operators.size() - 1).getPrecedence() <= prec)
+					reduce(operands, operators);
+				operators.add(sexp);
+			}else
+				operators.add(sexp);
+		}
+		while (!operators.isEmpty())
+			reduce(operands, operators);
+		
+		sub.clear();
+		sub.add(operands.get(0));
+	}
+	
+	/**
+	 * Applies the operation on the top of the operator stack to the operands it takes.
+	 */
+	protected void reduce(List<Subexpression> operands, List<Subexpression> operators) {
+		Subexpression op = operators.remove(operators.size() - 1);
+		List<Subexpression> chain = new ArrayList<>(3);
+		int index = 0;
+		Subexpression rhs = operands.remove(operands.size() - 1);
+		if (op instanceof BinOp) {
+			chain.add(operands.remove(operands.size() - 1));
+			index = 1;
+		}
+		chain.add(op);
+		chain.add(rhs);
+		op.evaluateChain(index, chain);
+		operands.add(op);
+	}
+	
+	/**
+	 * Decides whether the subexpressions given alternate between operands and binary
+	 * operations, where an operand is either a value, or a unary operation and the value it
+	 * applies to. Lastly, a unary operation can only follow a binary operation which binds
+	 * less tightly, since otherwise the binary operation would be grouped first, and find its
+	 * right hand side missing.
+	 */
+	protected boolean isWellFormed(List<Subexpression> sub) {
+		Float lastBinary = null;
+		boolean operand = true; // whether an operand is expected next
+		for (int i = 0; i < sub.size(); i++) {
+			Subexpression sexp = sub.get(i);
+			if (sexp.isLink() && sexp.getPrecedence() == null)
+				return false;
+			if (operand) {
+				if (sexp instanceof BinOp && sexp.isLink())
+					return false;
+				if (sexp.isLink()) {
+					if (lastBinary != null && sexp.getPrecedence() >= lastBinary)
+						return false;
+					if (i + 1 >= sub.size() || sub.get(i + 1).isLink())
+						return false;
+					i++;
+				}
+				operand = false;
+			}else {
+				if (!(sexp instanceof BinOp && sexp.isLink()))
+					return false;
+				lastBinary = sexp.getPrecedence();
+				operand = true;
+			}
+		}
+		return !operand;
+	}
+	
+	/**
+	 * Groups the operations one precedence level at a time, restarting from the front of the
+	 * list each time an operation is grouped. This takes quadratic time, so it is only used
+	 * for lists which are not well formed, to report the same error as it always has.
+	 */
+	protected void groupByLevel(List<Subexpression> sub) {
+		TreeSet<Float> precs = new TreeSet<>();
+		for (int i = 0; i < sub.size(); i++) {
+			Float prec = sub.get(i).getPrecedence();
+			if (prec != null)
+				precs.add(prec);
+		}
+		for (Float prec: precs) {
+			boolean tryAgain;
+			do {
+				tryAgain = false;
+				for (int i = 0; i < sub.size(); i++) {
+					Subexpression sexp = sub.get(i);
+					if (!sexp.isLink())
+						continue;
+					Float subPrec = sexp.getPrecedence();
+					if (subPrec == null)
+						continue;
+					if (sexp.getPrecedence().equals(prec)) {
+						sexp.evaluateChain(i, sub);
+						tryAgain = true;
+						break; // restart this precedence after the list has been modified
+					}
+				}
+			}while(tryAgain);
+		}
+	}
+	
 	public List<Variable> getVariables() {
 		return variables;
 	}
@@ -144,16 +243,13 @@ public class Checker {
 		return types;
 	}
 	
-	protected Type resolveAnnotation(Type annot, Type valued, List<Frame> env, NameBinding bind) {
+	protected Type resolveAnnotation(Type annot, Type valued, Environment env, NameBinding bind) {
 		if (annot instanceof Type.Stub) {
 			// Stubs receive a leading - to the type name so that the stub may not
 			//  be confused with a real type value.
 			String realName = annot.name.substring(1);
 			// try to resolve the stub name
-			Type referenced = null;
-			for (int i = env.size() - 1; i>=0 && referenced==null; i--) {
-				referenced = env.get(i).typeDefined(realName);
-			}
+			Type referenced = env.findType(realName);
 			if (referenced == null)
 				throw new CheckException("Type annotation for ", bind,
 						" cannot be resolved! Undefined type \"", realName, "\".");
@@ -167,16 +263,20 @@ public class Checker {
 					annot, "!");
 	}
 	
-	protected Type check(Assignment asgn, List<Frame> env) {
+	protected Type check(Assignment asgn, Environment env) {
 		Type type = null;
 		// There cannot be two variables with the same name in the same scope
 		// TODO we will need to modify this for different signatures...
-		// There can be two functions with the same name as long as they are variants
-		//  of the same parent type. 
-		Frame curScope = env.get(env.size() - 1);
+		// There can be two functions with the same name as long as they are methods of
+		//  different types, which may override each other.
+		Frame curScope = env.top();
 		String name = asgn.getVarName();
-		if (curScope.varDefined(name) != null) {
-			NameBinding firstInstance = curScope.varDefined(name).source;
+		Variable defined = curScope.varDefined(name);
+		boolean otherMethod = defined != null && asgn.getPath() != null && defined.source instanceof Assignment &&
+				((Assignment)defined.source).getPath() != null &&
+				!((Assignment)defined.source).getPath().equals(asgn.getPath());
+		if (defined != null && !otherMethod) {
+			NameBinding firstInstance = defined.source;
 			throw new CheckException("Multiple definitions of same variable name \"",
 					name, " found in the same scope! First instance: ", firstInstance,
 					" and second instance: ", asgn);
@@ -193,13 +293,13 @@ public class Checker {
 				type = resolveAnnotation(asgn.getAnnotation(), type, env, asgn);
 			var.setType(type);
 			variables.add(var);
-			curScope.allocate(var);
+			env.allocate(var);
 		}else {
 			// Function definitions are special since the value can have references to itself.
 			// Also, it needs to add the parameters in a scope that contains only the value.
 			
 			// add this function's name to the environment to make recursive calls possible
-			curScope.allocate(var);
+			env.allocate(var);
 			// Then create a new function scope where the parameters will reside
 			Frame fxScope = new Frame(asgn.getVarName());
 			// Even though we will need to look through a variable list later, the elements
@@ -218,14 +318,7 @@ public class Checker {
 					String tName = path.substring(0, periodAt);
 					// Find the analogous type given the name
 					if (attachedType == null) {
-						// We need to work backwards, trying to find the type
-						for (int i = env.size() - 1; i >= 0; i--) {
-							Frame frame = env.get(i);
-							if (frame.typeDefined(tName) != null) {
-								attachedType = frame.typeDefined(tName);
-								break;
-							}
-						}
+						attachedType = env.findType(tName);
 						if (attachedType == null)
 							throw new CheckException("No type found matching \"", tName,
 									"\" in path \"", asgn.getPath(), "\" of ", asgn);
@@ -283,11 +376,11 @@ public class Checker {
 				returnType = new Undetermined.Return(var);
 			var.setType(new Type(returnType, inputsReplacement));
 			
-			env.add(fxScope);
+			env.push(fxScope);
 			// Now that the function scope is made, use it for the value
 			type = check(asgn.getValue(), env);
 			
-			env.remove(env.size() - 1); // Remove the scope of the function call
+			env.pop(); // Remove the scope of the function call
 			// Now we can set the type of the return (assuming it has not been set already)
 			if (var.getType().output instanceof Undetermined.Return) {
 				var.getType().output = type;
@@ -340,7 +433,11 @@ public class Checker {
 			// Then, for each of the actual externalities, we add a new parameter to this function
 			//  as a default value parameter
 			// As we go through the replacement variables, we add the remaining needed entries.
-			for (ParamVariable pVar: replacements.values()) {
+			// They are sorted by name, so methods which use the same variables take them in the
+			//  same order.
+			List<ParamVariable> ordered = new ArrayList<>(replacements.values());
+			ordered.sort((a, b) -> a.name.compareTo(b.name));
+			for (ParamVariable pVar: ordered) {
 				// We need to create a new reference to the old assignment.
 				// That is what we use as the "default value" to this implicit
 				//  parameter. The idea is that if this function is in scope
@@ -370,16 +467,72 @@ public class Checker {
 			}
 			
 			// Lastly, tell the attached type (if any) that this is a member
-			if (attachedType != null)
-				attachedType.methods.put(var.getName(), var);
+			if (attachedType != null) {
+				// A method of the same name from a parent is overridden by this one
+				for (int i = 0; attachedType.getParents() != null && i < attachedType.getParents().length; i++) {
+					Type parent = attachedType.getParents()[i];
+					Member inherited = (parent == null)? null : parent.getMember(var.name);
+					if (inherited != null && inherited.getSlot() == -1) {
+						override(var, inherited.getVariable());
+						break;
+					}
+				}
+				attachedType.addMethod(var);
+				// And this overrides any of the same name already defined by descendants
+				for (Type descendant: types) {
+					if (descendant == attachedType || descendant.getMethods() == null || !descendant.isa(attachedType))
+						continue;
+					Variable theirs = descendant.getMethods().get(var.name);
+					if (theirs != null && theirs.isOverridden())
+						override(theirs, var);
+				}
+			}
 		}
 		
 		return null;
 	}
 	
-	protected Type check(TypeDefinition def, List<Frame> env) {
+	/**
+	 * Makes the method override the one given, so that dynamic dispatch may call either in place
+	 * of the other. Both must take the same number of parameters, and use the same variables
+	 * from outside, since a call only gives those of the method it names.
+	 */
+	protected void override(Variable method, Variable overridden) {
+		List<Variable> uses = externalitiesOf(method);
+		List<Variable> theirs = externalitiesOf(overridden);
+		if (method.getType().getInputs().length - uses.size() !=
+				overridden.getType().getInputs().length - theirs.size())
+			throw new CheckException("Method ", method.getSource(), " must take the same number of parameters as the ",
+					overridden.getName(), " it overrides!");
+		for (Variable used: uses) {
+			if (!theirs.contains(used))
+				throw new CheckException("Method ", method.getSource(), " uses \"", used.getName(),
+						"\" from outside, which the ", overridden.getName(), " it overrides does not!");
+		}
+		for (Variable used: theirs) {
+			if (!uses.contains(used))
+				throw new CheckException("Method ", method.getSource(), " does not use \"", used.getName(),
+						"\" from outside, which the ", overridden.getName(), " it overrides does!");
+		}
+		method.setOverrides(overridden);
+	}
+	
+	/**
+	 * @return the variables from outside which the function takes as implicit parameters, in
+	 * the order of those parameters
+	 */
+	protected List<Variable> externalitiesOf(Variable fx) {
+		List<Variable> found = new ArrayList<>();
+		for (ParameterType input: fx.getType().getInputs()) {
+			if (input.implicit)
+				found.add(((Reference)input.defaultValue.getSubexpressions().get(0)).getLinkedTo());
+		}
+		return found;
+	}
+	
+	protected Type check(TypeDefinition def, Environment env) {
 		// Verify that there is not already a type with this same name
-		Frame curScope = env.get(env.size() - 1);
+		Frame curScope = env.top();
 		String name = def.getTypeName();
 		if (curScope.typeDefined(name) != null) {
 			TypeDefinition firstInstance = curScope.typeDefined(name).source;
@@ -390,9 +543,10 @@ public class Checker {
 		
 		// We want to create a new type from this definition
 		Type created = new Type(def.getTypeName());
+		int id = types.size();
 		types.add(created);
 		def.setSourced(created);
-		curScope.makeType(created);
+		env.makeType(created);
 		// We also want to add all supers and fields from this type definition
 		List<Parameter> fieldList = def.getFieldList();
 		int numSupers = 0;
@@ -443,6 +597,9 @@ public class Checker {
 				
 			}
 		}
+		// With all its parents known, the type takes its place in the hierarchy. Its id is its
+		//  index in the list of types, which is greater than that of any type defined before.
+		created.freeze(id);
 		for (int i=0; i < fieldList.size(); i++) {
 			Parameter p = fieldList.get(i);
 			Variable field = new Variable(p.getName(), p.getDefaultVal(), p);
@@ -458,16 +615,16 @@ public class Checker {
 			fields[index].setDefaultValue(p.getDefaultVal());
 			index++;
 			
-			created.fields.put(p.getName(), field);
+			created.addField(field);
 		}
 		Variable construct = new Variable("..new" + def.getTypeName(), null, null);
 		construct.type = new Type(created, fields); // give the params for the constructor type 
-		created.methods.put(construct.name, construct);
+		created.addMethod(construct);
 		
 		return null;
 	}
 	
-	protected Type check(Reference ref, List<Frame> env) {
+	protected Type check(Reference ref, Environment env) {
 		if (checkedRef.contains(ref))
 			return ref.getType(); // do not re-check a reference
 		checkedRef.add(ref);
@@ -513,17 +670,18 @@ public class Checker {
 					throw new CheckException("The type of ", sub, ", with the member ", ref, " could not be determined!");
 				
 				// Now we must find some reference within
-				// We should be able to statically determine what type this member belongs to
-				Type tempType = getMemberOf(parentType, ref.getVarName());
-				if (tempType == null)
+				// We should be able to statically determine what type this member belongs to. This
+				//  does statically what @..super does dynamically, with one lookup in the member table.
+				Member found = parentType.getMember(ref.getVarName());
+				if (found == null)
 					throw new CheckException("\"", ref.getVarName(), "\" from ", ref, " is not a member of ", parentType, "!");
-				parentType = tempType;
-				Variable linkedTo = parentType.fields.get(ref.getVarName());
-				if (linkedTo == null)
-					linkedTo = parentType.methods.get(ref.getVarName());
+				Type receiver = parentType;
+				parentType = found.owner;
+				Variable linkedTo = found.variable;
 				ref.setLinkedTo(linkedTo);
 				ref.setMember(true);
 				ref.getMemberData().location = new Value(null, sub);
+				ref.getMemberData().receiver = receiver;
 				ref.getMemberData().memberOf = parentType;
 				
 				Type linkType = linkedTo.getType();
@@ -539,16 +697,24 @@ public class Checker {
 		// If we got here, then this is not a member
 		String name = ref.getVarName();
 		// We must find some variable that matches the name given
+		int limit = env.size() - 1;
+		if (name.equals("self")) {
+			// define "self" as the innermost function, which must be found from its own frame
+			int fxAt = env.innermostFunction();
+			if (fxAt != -1) {
+				name = env.get(fxAt).functionName;
+				limit = fxAt;
+			}
+		}
+		Environment.Binding<Variable> varFound = env.findVariable(name, limit);
+		Environment.Binding<Type> typeFound = env.findType(name, limit);
 		Variable referenced = null;
 		Type typed = null;
-		int i = env.size() - 1;
-		for (; i>=0 && referenced==null && typed==null; i--) {
-			Frame search = env.get(i);
-			if (name.equals("self") && search.functionName != null)
-				name = search.functionName; // define "self"
-			referenced = search.varDefined(name);
-			typed = search.typeDefined(name);
-		}
+		// If both are found in the same frame, the type is used
+		if (typeFound != null && (varFound == null || typeFound.depth >= varFound.depth))
+			typed = typeFound.bound;
+		else if (varFound != null)
+			referenced = varFound.bound;
 		if (typed != null) {
 			// if we found the type, then we have a constructor call here
 			referenced = typed.methods.get("..new" + typed.name);
@@ -562,10 +728,7 @@ public class Checker {
 				throw new CheckException(ref, " to an undeclared variable \"", name, "\"!");
 			}
 			// Add this ref as an externality for all passed function scopes
-			for (int j = i + 2; j < env.size(); j++) {
-				if (env.get(j).isFunction())
-					env.get(j).addExternality(ref);
-			}
+			env.addExternality(ref, varFound.depth);
 		}		
 		referenced.addRef(ref);
 		ref.setLinkedTo(referenced);
@@ -592,33 +755,7 @@ public class Checker {
 		
 		return ref.getType();
 	}
-	/**
-	 * Gets the type that the specified value is a member of, beginning with the provided
-	 * start type. If the type cannot be found for which name is a member, then null is
-	 * returned.
-	 * <p>
-	 * This method does statically what @..super does dynamically.
-	 * @param start the type (or the parents of which) to find the member in
-	 * @param name the name of the member to find
-	 * @return the type where name is a direct members
-	 */
-	protected Type getMemberOf(Type start, String name) {
-		Variable linkedTo = start.fields.get(name); // first try a field
-		if (linkedTo == null)
-			linkedTo = start.methods.get(name); // next try a method
-		if (linkedTo == null) { // could not find a valid member in the type
-			if (start.getParents() != null) {
-				for (Type parent: start.getParents()) {
-					Type maybeMembered = getMemberOf(parent, name);
-					if (maybeMembered != null)
-						return maybeMembered;
-				}
-			}
-			return null;
-		}
-		return start;
-	}
-	protected void handleFunctionRef(Reference ref, Type type, List<Frame> env, int refAt) {
+	protected void handleFunctionRef(Reference ref, Type type, Environment env, int refAt) {
 		// Just because this reference is a function type does *not* mean that it is being
 		//  used as a function call. We need to take a look at the next subexpression to see
 		//  the context of how this reference is being used.
@@ -676,10 +813,13 @@ public class Checker {
 			ls = new Tuple(argLs.getParent());
 			ls.addArg(new LabeledValue(new Value(null, argLs)));
 		}
+		LabeledValue located = null;
 		if (ref.getMemberData() != null) {
 			// If member data is not null, then this is a member, and needs to have
-			// the "this" member provided as an argument
-			ls.getArgs().add(0, new LabeledValue(ref.getMemberData().location));
+			// the "this" member provided as an argument. It is labeled to find its place, since
+			// methods defined in the program take it after their explicit parameters.
+			located = new LabeledValue(ref.getMemberData().location, "this");
+			ls.getArgs().add(0, located);
 		}
 		
 		// We want to type check on the number of arguments the function needs.
@@ -775,6 +915,8 @@ public class Checker {
 			sortedArgs[k] = new LabeledValue(paramList[k].defaultValue.clone());
 		}
 		// Finally, we update the argument list to match our new sorted list
+		if (located != null)
+			located.setLabel(null);
 		ls.getArgs().clear();
 		for (LabeledValue arg: sortedArgs)
 			ls.addArg(arg);
@@ -788,17 +930,17 @@ public class Checker {
 		ref.setType(type.output);
 	}
 	
-	protected Type check(Block block, List<Frame> env) {
-		env.add(new Frame(null));
+	protected Type check(Block block, Environment env) {
+		env.push(new Frame(null));
 		Type type = null;
 		// check all children
 		for (Expression e: block.getBody())
 			type = check(e, env);
-		env.remove(env.size() - 1);
+		env.pop();
 		return type; // the value (must be last expression) has the type
 	}
 	
-	protected Type check(If ife, List<Frame> env) {
+	protected Type check(If ife, Environment env) {
 		Type condType = check(ife.getCondition(), env);
 		expectType(Type.Bool, condType);
 		Type thenType = check(ife.getThen(), env);
@@ -812,7 +954,7 @@ public class Checker {
 		return intersected;
 	}
 	
-	protected Type check(Operation op, List<Frame> env) {
+	protected Type check(Operation op, Environment env) {
 		Type rhsType = check(op.getRHS(), env);
 		if (op instanceof Operation.Not || op instanceof BinOp.And || op instanceof BinOp.Or)
 			rhsType = expectType(Type.Bool, rhsType);
@@ -852,7 +994,7 @@ public class Checker {
 		return rhsType;
 	}
 	
-	protected Type check(Literal lit, List<Frame> env) {
+	protected Type check(Literal lit, Environment env) {
 		if (lit.getToken().getType() == Token.Type.NUMBER)
 			return Type.Int;
 		return Type.Bool; // the other type is true or false
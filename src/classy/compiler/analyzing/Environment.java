@@ -0,0 +1,169 @@
+package classy.compiler.analyzing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import classy.compiler.parsing.Reference;
+
+/**
+ * The stack of frames in scope during checking, together with a symbol table over all of them.
+ * <p>
+ * The symbol table maps each name to a stack of its bindings (innermost last), which are pushed
+ * when a frame enters or allocates the name and popped when the frame exits. Thus the binding
+ * in scope is found without searching each frame from the innermost outward.
+ * <p>
+ * Frames may allocate freely before they are pushed, but once in the environment, they must
+ * allocate through {@link #allocate(Variable)} and {@link #makeType(Type)}.
+ */
+public class Environment {
+	protected List<Frame> frames = new ArrayList<>();
+	/** The depth of each function frame in {@link #frames}, innermost last */
+	protected List<Integer> functions = new ArrayList<>();
+	protected Map<String, List<Binding<Variable>>> variables = new HashMap<>();
+	protected Map<String, List<Binding<Type>>> types = new HashMap<>();
+
+	/**
+	 * Something bound to a name by the frame at some depth.
+	 */
+	public static class Binding<T> {
+		public final int depth;
+		public final T bound;
+
+		public Binding(int depth, T bound) {
+			this.depth = depth;
+			this.bound = bound;
+		}
+	}
+
+	public void push(Frame frame) {
+		int depth = frames.size();
+		frames.add(frame);
+		if (frame.isFunction())
+			functions.add(depth);
+		for (Variable var: frame.locals.values())
+			bind(variables, var.name, depth, var);
+		for (Type type: frame.types.values())
+			bind(types, type.name, depth, type);
+	}
+
+	public Frame pop() {
+		int depth = frames.size() - 1;
+		Frame frame = frames.remove(depth);
+		if (frame.isFunction())
+			functions.remove(functions.size() - 1);
+		for (String name: frame.locals.keySet())
+			unbind(variables, name);
+		for (String name: frame.types.keySet())
+			unbind(types, name);
+		return frame;
+	}
+
+	private static <T> void bind(Map<String, List<Binding<T>>> table, String name, int depth, T bound) {
+		List<Binding<T>> stack = table.get(name);
+		if (stack == null) {
+			stack = new ArrayList<>(2);
+			table.put(name, stack);
+		}
+		Binding<T> binding = new Binding<>(depth, bound);
+		// A frame can only bind each name once, so a later binding replaces the earlier
+		int last = stack.size() - 1;
+		if (last >= 0 && stack.get(last).depth == depth)
+			stack.set(last, binding);
+		else
+			stack.add(binding);
+	}
+
+	private static <T> void unbind(Map<String, List<Binding<T>>> table, String name) {
+		List<Binding<T>> stack = table.get(name);
+		stack.remove(stack.size() - 1);
+		if (stack.isEmpty())
+			table.remove(name);
+	}
+
+	/**
+	 * Finds the innermost binding of a name, ignoring any made by frames deeper than the limit.
+	 */
+	private static <T> Binding<T> find(Map<String, List<Binding<T>>> table, String name, int limit) {
+		List<Binding<T>> stack = table.get(name);
+		if (stack == null)
+			return null;
+		// Almost always, the innermost binding is within the limit
+		for (int i = stack.size() - 1; i >= 0; i--) {
+			Binding<T> binding = stack.get(i);
+			if (binding.depth <= limit)
+				return binding;
+		}
+		return null;
+	}
+
+	public void allocate(Variable var) {
+		top().allocate(var);
+		bind(variables, var.name, frames.size() - 1, var);
+	}
+
+	public void makeType(Type type) {
+		top().makeType(type);
+		bind(types, type.name, frames.size() - 1, type);
+	}
+
+	/**
+	 * Finds the variable in scope with the name given.
+	 * @param name the name of the variable
+	 * @param limit the depth of the innermost frame to search
+	 * @return the binding of the variable, or null if there is no such variable in scope
+	 */
+	public Binding<Variable> findVariable(String name, int limit) {
+		return find(variables, name, limit);
+	}
+
+	/**
+	 * Finds the type in scope with the name given.
+	 * @param name the name of the type
+	 * @param limit the depth of the innermost frame to search
+	 * @return the binding of the type, or null if there is no such type in scope
+	 */
+	public Binding<Type> findType(String name, int limit) {
+		return find(types, name, limit);
+	}
+
+	public Type findType(String name) {
+		Binding<Type> found = find(types, name, frames.size() - 1);
+		return (found == null)? null : found.bound;
+	}
+
+	/**
+	 * Gets the depth of the innermost function frame.
+	 * @return the depth, or -1 if no function frame is in scope
+	 */
+	public int innermostFunction() {
+		return functions.isEmpty()? -1 : functions.get(functions.size() - 1);
+	}
+
+	/**
+	 * Records the reference as an externality of every function frame deeper than the depth
+	 * given, which is the depth of the frame where the referenced variable is defined.
+	 */
+	public void addExternality(Reference ref, int definedAt) {
+		for (int i = functions.size() - 1; i >= 0; i--) {
+			int depth = functions.get(i);
+			if (depth <= definedAt)
+				break;
+			frames.get(depth).addExternality(ref);
+		}
+	}
+
+	public Frame top() {
+		return frames.get(frames.size() - 1);
+	}
+
+	public Frame get(int depth) {
+		return frames.get(depth);
+	}
+
+	public int size() {
+		return frames.size();
+	}
+
+}
@@ -0,0 +1,229 @@
+package classy.compiler.analyzing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import classy.compiler.lexing.Token;
+import classy.compiler.parsing.Assignment;
+import classy.compiler.parsing.BinOp;
+import classy.compiler.parsing.Block;
+import classy.compiler.parsing.Expression;
+import classy.compiler.parsing.If;
+import classy.compiler.parsing.Literal;
+import classy.compiler.parsing.Operation;
+import classy.compiler.parsing.Parameter;
+import classy.compiler.parsing.Reference;
+import classy.compiler.parsing.Tuple;
+import classy.compiler.parsing.Value;
+
+/**
+ * Interprets calls to find their results at compile time. Since functions are pure, a call
+ * whose arguments are all literals has the same result whenever it is made.
+ * <p>
+ * Only integers, booleans and functions are understood. Evaluation gives up on anything else
+ * (such as objects), on anything which would fail at runtime (such as division by zero), and
+ * once it takes more steps, or nests calls more deeply, than allowed.
+ */
+public class Evaluator {
+	// The most expressions which may be evaluated for one call, and the most calls which may be
+	//  nested in each other
+	public static final int STEPS = 100_000;
+	public static final int DEPTH = 200;
+	protected final int budget;
+	// The steps left, and the depth of the call being evaluated
+	protected int steps;
+	protected int depth;
+
+	public Evaluator() {
+		this(STEPS);
+	}
+	public Evaluator(int budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Thrown once the evaluation cannot continue. The call is then left for runtime.
+	 */
+	protected static class Unknown extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public Unknown() {
+			super(null, null, false, false);
+		}
+	}
+
+	/**
+	 * Evaluates the call given, which must be within the budget of this evaluator.
+	 * @return the result (an Integer or Boolean), or null if it could not be found
+	 */
+	public Object evaluate(Reference call) {
+		steps = budget;
+		depth = 0;
+		try {
+			Object result = eval(call, new HashMap<>());
+			if (result instanceof Integer || result instanceof Boolean)
+				return result;
+		}catch (Unknown | StackOverflowError e) {}
+		return null;
+	}
+
+	/**
+	 * Finds the value of an integer literal, which wraps around to fit in 32 bits, as it does
+	 * when the literal is given to llc.
+	 * @throws NumberFormatException if the literal does not fit in 64 bits, which is then left
+	 * for llc to wrap
+	 */
+	public static int parseNumber(String literal) {
+		return (int)Long.parseLong(literal);
+	}
+
+	/**
+	 * @return the arguments given to the call, in the order of its parameters
+	 */
+	public static List<? extends Value> argsOf(Reference call) {
+		Value argument = call.getArgument();
+		if (argument.getSubexpressions().size() == 1 && argument.getSubexpressions().get(0) instanceof Tuple)
+			return ((Tuple)argument.getSubexpressions().get(0)).getArgs();
+		return List.of(argument);
+	}
+
+	/**
+	 * Evaluates the expression, where the variables already known (the parameters of the
+	 * function being called, and bindings already found in it) are in the frame given.
+	 */
+	protected Object eval(Expression e, Map<Variable, Object> frame) {
+		if (--steps < 0)
+			throw new Unknown();
+		if (e instanceof Value) {
+			Value value = (Value)e;
+			if (value.getSubexpressions().size() != 1)
+				throw new Unknown();
+			return eval(value.getSubexpressions().get(0), frame);
+		}else if (e instanceof Literal) {
+			Token token = ((Literal)e).getToken();
+			if (token.getType() == Token.Type.NUMBER) {
+				try {
+					return parseNumber(token.getValue());
+				}catch (NumberFormatException tooLong) {
+					throw new Unknown();
+				}
+			}
+			if (token.getType() == Token.Type.TRUE || token.getType() == Token.Type.FALSE)
+				return token.getType() == Token.Type.TRUE;
+		}else if (e instanceof Reference) {
+			Reference ref = (Reference)e;
+			if (ref.isMember() || ref.getLinkedTo() == null)
+				throw new Unknown();
+			if (ref.getArgument() == null)
+				return lookup(ref.getLinkedTo(), frame);
+			return call(ref, frame);
+		}else if (e instanceof Operation)
+			return operate((Operation)e, frame);
+		else if (e instanceof If) {
+			If if_ = (If)e;
+			return eval(truth(eval(if_.getCondition(), frame))? if_.getThen() : if_.getElse(), frame);
+		}else if (e instanceof Block) {
+			// The bindings in the block are found when they are first used
+			List<Expression> body = ((Block)e).getBody();
+			return eval(body.get(body.size() - 1), frame);
+		}
+		throw new Unknown();
+	}
+
+	protected Object lookup(Variable var, Map<Variable, Object> frame) {
+		if (frame.containsKey(var))
+			return frame.get(var);
+		if (!(var.source instanceof Assignment) || var.value == null)
+			throw new Unknown();
+		// A function is its own value, which can be called once it is given arguments
+		if (((Assignment)var.source).getParamList() != null)
+			return var;
+		Object value = eval(var.value, frame);
+		frame.put(var, value);
+		return value;
+	}
+
+	protected Object call(Reference ref, Map<Variable, Object> frame) {
+		// The function may have been given as an argument (for an externality)
+		Object called = frame.containsKey(ref.getLinkedTo())? frame.get(ref.getLinkedTo()) : ref.getLinkedTo();
+		if (!(called instanceof Variable))
+			throw new Unknown();
+		Variable fx = (Variable)called;
+		if (!(fx.source instanceof Assignment) || fx.value == null)
+			throw new Unknown(); // built-in functions, constructors and such
+		List<Parameter> params = ((Assignment)fx.source).getParamList();
+		List<? extends Value> args = argsOf(ref);
+		if (params == null || args.size() > params.size())
+			throw new Unknown();
+
+		Map<Variable, Object> inner = new HashMap<>();
+		for (int i = 0; i < args.size(); i++)
+			inner.put(params.get(i).getSourced(), eval(args.get(i), frame));
+		// Any parameter left out has its default value
+		for (int i = args.size(); i < params.size(); i++) {
+			Value given = params.get(i).getDefaultVal();
+			if (given == null)
+				throw new Unknown();
+			inner.put(params.get(i).getSourced(), eval(given, inner));
+		}
+		if (++depth > DEPTH)
+			throw new Unknown();
+		Object result = eval(fx.value, inner);
+		depth--;
+		return result;
+	}
+
+	protected Object operate(Operation op, Map<Variable, Object> frame) {
+		if (op instanceof Operation.Not)
+			return !truth(eval(op.getRHS(), frame));
+		if (op instanceof Operation.Negation)
+			return -number(eval(op.getRHS(), frame));
+		BinOp bop = (BinOp)op;
+		if (op instanceof BinOp.And || op instanceof BinOp.Or) {
+			boolean left = truth(eval(bop.getLHS(), frame));
+			// Since functions are pure, the right need not be found once the left decides
+			if (left == op instanceof BinOp.Or)
+				return left;
+			return truth(eval(bop.getRHS(), frame));
+		}
+		int left = number(eval(bop.getLHS(), frame));
+		int right = number(eval(bop.getRHS(), frame));
+		if (op instanceof BinOp.Addition)
+			return left + right;
+		else if (op instanceof BinOp.Subtraction)
+			return left - right;
+		else if (op instanceof BinOp.Multiplication)
+			return left * right;
+		else if (op instanceof BinOp.Division || op instanceof BinOp.Modulus) {
+			// These would trap at runtime, so the call is left to do so
+			if (right == 0 || (left == Integer.MIN_VALUE && right == -1))
+				throw new Unknown();
+			return (op instanceof BinOp.Division)? left / right : left % right;
+		}else if (op instanceof BinOp.Equal)
+			return left == right;
+		else if (op instanceof BinOp.NEqual)
+			return left != right;
+		else if (op instanceof BinOp.LessThan)
+			return left < right;
+		else if (op instanceof BinOp.LessEqual)
+			return left <= right;
+		else if (op instanceof BinOp.GreaterThan)
+			return left > right;
+		else if (op instanceof BinOp.GreaterEqual)
+			return left >= right;
+		throw new Unknown();
+	}
+
+	protected static int number(Object value) {
+		if (!(value instanceof Integer))
+			throw new Unknown();
+		return (Integer)value;
+	}
+	protected static boolean truth(Object value) {
+		if (!(value instanceof Boolean))
+			throw new Unknown();
+		return (Boolean)value;
+	}
+
+}
@@ -0,0 +1,97 @@
+package classy.compiler.analyzing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class hierarchy analysis: finds which implementations of a method a call may select, from the
+ * types which may have objects at runtime and the parents of each.
+ * <p>
+ * An object selects the implementation its type finds first among its members, which is its own
+ * if it has one, else the first found through its parents. A call on a location known to be of
+ * some type can then only select the implementations of that type and its descendants.
+ */
+public class Hierarchy {
+	// The types whose tags objects may have at runtime
+	protected List<Type> objects = new ArrayList<>();
+
+	/**
+	 * @param types every type in the program
+	 * @param reach what the program may use, or null to suppose any type may have objects
+	 */
+	public Hierarchy(List<Type> types, Reachability reach) {
+		for (Type type: types) {
+			if (type.isFunction() || type.getMethods() == null)
+				continue;
+			if (reach == null || reach.instantiates(type))
+				objects.add(type);
+		}
+	}
+
+	/**
+	 * Finds the implementation of the method selected by each type of object which may be the
+	 * location of the call.
+	 * @param method the method called, which may be the root or any override
+	 * @param receiver the type the location of the call is known to have
+	 * @return the implementation for each type of object, in the order of the types
+	 */
+	public Map<Type, Variable> implementations(Variable method, Type receiver) {
+		Map<Type, Variable> found = new LinkedHashMap<>();
+		for (Type object: objects) {
+			if (!object.isa(receiver))
+				continue;
+			Member member = object.getMember(method.getName());
+			if (member != null && member.getSlot() == -1)
+				found.put(object, member.getVariable());
+		}
+		return found;
+	}
+
+	/**
+	 * Decides whether the call is monomorphic, where every object which may be its location
+	 * selects the same implementation.
+	 * @param method the method called
+	 * @param receiver the type the location of the call is known to have
+	 * @return the only implementation the call may select, or null if there may be several (or
+	 * none, where the call is never made)
+	 */
+	public Variable monomorphic(Variable method, Type receiver) {
+		Variable only = null;
+		for (Variable impl: implementations(method, receiver).values()) {
+			if (only != null && only != impl)
+				return null;
+			only = impl;
+		}
+		return only;
+	}
+
+	/**
+	 * Decides whether an object known to be of the type can only be of exactly that type, which
+	 * is when no descendant of it may have objects.
+	 */
+	public boolean isExact(Type type) {
+		for (Type object: objects) {
+			if (object != type && object.isa(type))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the type of the object a method is called on, or null if it is not a method
+	 */
+	public static Type receiverOf(Variable method) {
+		if (method.getType() == null || !method.getType().isFunction())
+			return null;
+		// The object is the first input of built-in methods, but follows the explicit parameters
+		//  of those defined in the program
+		for (ParameterType input: method.getType().getInputs()) {
+			if (input.getName().equals("this"))
+				return input.getType();
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,37 @@
+package classy.compiler.analyzing;
+
+/**
+ * A field or method of some type, as found from that type or any of its descendants.
+ */
+public class Member {
+	protected Type owner;
+	protected int slot;
+	protected Variable variable;
+
+	public Member(Type owner, int slot, Variable variable) {
+		this.owner = owner;
+		this.slot = slot;
+		this.variable = variable;
+	}
+
+	/**
+	 * @return the type which defines this member
+	 */
+	public Type getOwner() {
+		return owner;
+	}
+	/**
+	 * @return the index of this field in the structure of its owner, or -1 if it is a method
+	 */
+	public int getSlot() {
+		return slot;
+	}
+	public Variable getVariable() {
+		return variable;
+	}
+
+	public boolean isField() {
+		return slot != -1;
+	}
+
+}
@@ -1,7 +1,21 @@
 package classy.compiler.analyzing;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import classy.compiler.Classy;
 import classy.compiler.lexing.Token;
@@ -15,71 +29,1094 @@ import classy.compiler.parsing.Operation;
 import classy.compiler.parsing.Parameter;
 import classy.compiler.parsing.Reference;
 import classy.compiler.parsing.Subexpression;
+import classy.compiler.parsing.Tuple;
+import classy.compiler.parsing.Tuple.LabeledValue;
+import classy.compiler.parsing.TypeDefinition;
 import classy.compiler.parsing.Value;
 
 public class Optimizer {
+	// The number of changes made by each pass, by the name of the pass
+	protected Map<String, Integer> stats = new LinkedHashMap<>();
+	
+	// Variables are known by their index in the list of variables, where a removed variable is
+	//  replaced by null until all optimization is done.
+	protected List<Variable> variables;
+	// The variables which must be visited again
+	protected Queue<Integer> worklist = new ArrayDeque<>();
+	protected boolean[] queued;
+	// The variable whose value holds each block, and each reference which could be inlined, as of
+	//  the first visit to that variable. Since then, the variable may have been inlined into
+	//  another, which is found by following inlinedInto.
+	protected Map<Subexpression, Integer> owners = new HashMap<>();
+	protected int[] inlinedInto;
+	// The index of each variable, which is only needed (and made) once some variable loses a
+	//  reference from the value of another
+	protected Map<Variable, Integer> indices = null;
+	// Assignments which have been removed, but are still in the bodies of their blocks, and the
+	//  blocks which they must be removed from
+	protected Set<Expression> removed = new HashSet<>();
+	protected Set<Block> dirty = new LinkedHashSet<>();
+	
+	// The largest function (in the number of expressions in its value) which may be inlined at
+	//  any call, and the deepest that inlined calls may be nested in each other. A function
+	//  with only one call is inlined regardless of its size.
+	public static final int INLINE_SIZE = 20;
+	public static final int INLINE_DEPTH = 4;
+	protected int inlineSize = INLINE_SIZE;
+	protected int inlineDepth = INLINE_DEPTH;
+	// The functions whose calls are being inlined (or whose definition is being searched for
+	//  calls), innermost first, which cannot be inlined again within themselves
+	protected Deque<Variable> inlining = new ArrayDeque<>();
+	// The variable which each implicit parameter of a function (for its externalities) is
+	//  always given, which is the variable of the same name outside the function, and the
+	//  implicit parameters given each such variable
+	protected Map<Variable, Variable> externals = new HashMap<>();
+	protected Map<Variable, List<Variable>> externalParams = new HashMap<>();
+	// The number of variables made to hold common subexpressions, which is used to name them
+	protected int commonCount = 0;
+	// The types of the program and the type of its result, which (when known) are used to find
+	//  what the result is reached from, and the reachability found after optimization
+	protected List<Type> types = null;
+	protected Type result = null;
+	protected Reachability reach = null;
+	// The most steps which may be taken to evaluate a call with literal arguments at compile
+	//  time, or 0 if calls are never evaluated
+	protected int evalSteps = Evaluator.STEPS;
+	// The calls which could not be evaluated, which need not be tried again since their
+	//  arguments are already literals
+	protected Set<Reference> unevaluated = new HashSet<>();
 	
 	public Optimizer() {}
 	public Optimizer(Checker check, Value program) {
+		types = check.types;
+		result = check.result;
+		optimize(check.variables, program);
+	}
+	public Optimizer(Checker check, Value program, int inlineSize, int inlineDepth) {
+		this(check, program, inlineSize, inlineDepth, Evaluator.STEPS);
+	}
+	public Optimizer(Checker check, Value program, int inlineSize, int inlineDepth, int evalSteps) {
+		this.inlineSize = inlineSize;
+		this.inlineDepth = inlineDepth;
+		this.evalSteps = evalSteps;
+		types = check.types;
+		result = check.result;
 		optimize(check.variables, program);
 	}
 	
+	protected void count(String pass) {
+		stats.merge(pass, 1, Integer::sum);
+	}
+	/**
+	 * @return the number of changes made by each pass of the optimizer, by the name of the pass
+	 */
+	public Map<String, Integer> getStats() {
+		return stats;
+	}
+	/**
+	 * @return what the result of the optimized program is reached from, or null if the types
+	 * of the program were not given
+	 */
+	public Reachability getReachability() {
+		return reach;
+	}
+	
 	public void optimize(List<Variable> variables, Value program) {
 		// Attempt to replace any unneeded variables with their values
 		// Optimization is an interesting process since different parts may be dependent on others.
-		//  If we do any one part first, then we could be missing out. Thus, we keep looping through
-		//  until no more changes are made.
-		boolean changesMade;
+		//  Every variable is visited once, and afterward, only when something it depends on
+		//  changed: when another variable is inlined into its value, or when a block in its value
+		//  loses its assignments.
+		this.variables = variables;
+		queued = null;
+		indices = null;
+		// Parameters are warned for before any optimization, since it may remove uses of them
+		//  (by inlining calls, or removing the functions which use them)
+		for (Variable var: variables) {
+			if (var.source instanceof Parameter && var.references.isEmpty())
+				Classy.warnings.add("Unused " + var.source + ".");
+			if (var.source instanceof Assignment && ((Assignment)var.source).getParamList() != null)
+				findExternals((Assignment)var.source);
+		}
+		// Calls are inlined first, since the variables they make and the values they change
+		//  should be optimized along with the rest
+		if (inlineSize > 0)
+			inline(program, 0);
+		int size = variables.size();
+		queued = new boolean[size];
+		inlinedInto = new int[size];
+		Arrays.fill(queued, true); // every variable waits for its first visit
+		Arrays.fill(inlinedInto, -1);
+		for (int i = 0; i < size; i++) {
+			Variable var = variables.get(i);
+			// Until a variable is first visited, nothing needs to know what its value holds,
+			//  since it will be visited after any change to it anyway
+			if (var.value != null)
+				index(var.value, i);
+			queued[i] = false;
+			visit(i);
+		}
+		
 		do {
-			changesMade = false;
-			List<Variable> removeList = new ArrayList<>();
-			for (Variable var: variables) {
-				// We try to optimize the value of the variable
-				if (var.value != null)
-					optimize(var.value);
+			while (!worklist.isEmpty()) {
+				int i = worklist.remove();
+				queued[i] = false;
+				visit(i);
+			}
+			
+			// Now remove all the assignments from their blocks at once. If a block can be reduced,
+			//  the variable holding it must be visited again.
+			for (Block block: dirty) {
+				block.getBody().removeIf(removed::contains);
+				if (block.reduce())
+					queue(ownerOf(block));
+			}
+			dirty.clear();
+			// The program itself is not the value of any variable, so it is optimized once no
+			//  variable is waiting. That may remove uses of variables, which are visited again.
+			if (worklist.isEmpty())
+				optimize(program);
+		}while (!worklist.isEmpty());
+		// Repeated subexpressions are bound last, since optimization can both make repeats (by
+		//  inlining) and remove them (by folding)
+		eliminate(program);
+		if (!removed.isEmpty())
+			variables.removeIf(Objects::isNull);
+		// Lastly, whatever the result cannot reach is removed. Unlike unused variables, this
+		//  includes functions which only call each other, and types which are never made.
+		if (types != null) {
+			reach = new Reachability(program, types, result);
+			Set<Variable> unreached = new HashSet<>();
+			prune(program, unreached);
+			variables.removeIf(unreached::contains);
+		}
+	}
+	
+	/**
+	 * Removes each assignment (and type definition) which cannot be reached from the result
+	 * from the blocks in the expression given.
+	 * @param unreached the variables of the assignments removed, which is added to
+	 */
+	protected void prune(Expression e, Set<Variable> unreached) {
+		if (e instanceof Value) {
+			for (Subexpression sub: ((Value)e).getSubexpressions())
+				prune(sub, unreached);
+		}else if (e instanceof Reference) {
+			Reference ref = (Reference)e;
+			if (ref.getArgument() != null)
+				prune(ref.getArgument(), unreached);
+			if (ref.getMemberData() != null && ref.getMemberData().location != null)
+				prune(ref.getMemberData().location, unreached);
+		}else if (e instanceof Operation) {
+			Operation op = (Operation)e;
+			prune(op.getRHS(), unreached);
+			if (op instanceof BinOp)
+				prune(((BinOp)op).getLHS(), unreached);
+		}else if (e instanceof If) {
+			If if_ = (If)e;
+			prune(if_.getCondition(), unreached);
+			prune(if_.getThen(), unreached);
+			prune(if_.getElse(), unreached);
+		}else if (e instanceof Block) {
+			Block block = (Block)e;
+			// A type which is never made needs no constructor, but it may still be a parent
+			boolean changed = block.getBody().removeIf(be -> {
+				boolean dead = (be instanceof Assignment && !reach.reaches((Assignment)be)) ||
+						(be instanceof TypeDefinition && !reach.instantiates(((TypeDefinition)be).getSourced()));
+				if (dead && be instanceof Assignment) {
+					unreached.add(((Assignment)be).getSourced());
+					unlink(((Assignment)be).getValue());
+				}
+				if (dead)
+					count("unreachable");
+				return dead;
+			});
+			for (Expression be: block.getBody()) {
+				if (be instanceof Assignment)
+					prune(((Assignment)be).getValue(), unreached);
+				else if (!(be instanceof TypeDefinition))
+					prune(be, unreached);
+			}
+			if (changed)
+				block.reduce();
+		}else if (e instanceof Tuple) {
+			for (Value arg: ((Tuple)e).getArgs())
+				prune(arg, unreached);
+		}
+	}
+	
+	/**
+	 * Records the variable given to each implicit parameter of the function, which is the
+	 * default value of the parameter.
+	 */
+	protected void findExternals(Assignment fx) {
+		for (Parameter param: fx.getParamList()) {
+			Value given = param.getDefaultVal();
+			if (param.getSourced().source == null && given != null && isPlainReference(given)) {
+				Variable outer = ((Reference)given.getSubexpressions().get(0)).getLinkedTo();
+				externals.put(param.getSourced(), outer);
+				externalParams.computeIfAbsent(outer, k -> new ArrayList<>()).add(param.getSourced());
+			}
+		}
+	}
+	
+	protected void queue(int i) {
+		if (i != -1 && !queued[i] && variables.get(i) != null) {
+			queued[i] = true;
+			worklist.add(i);
+		}
+	}
+	/**
+	 * Queues the variable to be visited again, since it lost a reference or its value became a
+	 * literal. Parameters are not (unless they are given that literal), since they cannot be
+	 * removed, and nothing is queued until every variable is visited once.
+	 */
+	protected void queue(Variable var) {
+		if (queued == null || !(var.source instanceof Assignment || externals.containsKey(var)))
+			return;
+		if (indices == null) {
+			indices = new HashMap<>();
+			for (int i = 0; i < variables.size(); i++) {
+				if (variables.get(i) != null)
+					indices.put(variables.get(i), i);
+			}
+		}
+		Integer i = indices.get(var);
+		if (i != null)
+			queue(i);
+	}
+	
+	protected void visit(int i) {
+		Variable var = variables.get(i);
+		if (var == null)
+			return; // the variable was already removed
+		count("visited");
+		// We try to optimize the value of the variable
+		if (var.value != null)
+			optimize(var.value);
+		
+		if (var.references.isEmpty()) {
+			// Whatever the value uses is no longer used by it
+			if (var.source instanceof Assignment && var.value != null)
+				unlink(var.value);
+			remove(i);
+		}
+		// A variable whose value is a literal is replaced by the literal wherever it is used
+		else if (constantOf(var) != null)
+			propagate(i);
+		// If there is only one usage, try to remove it
+		else if (var.references.size() == 1 && var.source != null) {
+			if (var.source instanceof Assignment &&
+					((Assignment)var.source).getParamList() == null) {
+				// Replace the reference with the value
+				Reference ref = var.references.get(0);
+				Value parent = ref.getParent();
+				List<Subexpression> subList = parent.getSubexpressions();
+				int replaceAt = subList.indexOf(ref);
+				if (replaceAt == -1)
+					return; // the reference is no longer in the program
+				subList.remove(replaceAt);
+				subList.addAll(replaceAt, var.value.getSubexpressions());
+				for (Subexpression moved: var.value.getSubexpressions())
+					moved.setParent(parent);
+				count("inlined");
 				
-				if (var.references.isEmpty())
-					removeList.add(var);
-				// If there is only one usage, try to remove it
-				else if (var.references.size() == 1 && var.source != null) {
-					// Cannot replace parameters and cannot currently TODO inline functions
-					if (var.source instanceof Assignment &&
-							((Assignment)var.source).getParamList() == null) {
-						// Replace the reference with the value
-						Reference ref = var.references.get(0);
-						List<Subexpression> subList = ref.getParent().getSubexpressions();
-						int replaceAt = subList.indexOf(ref);
-						subList.remove(replaceAt);
-						subList.addAll(replaceAt, var.value.getSubexpressions());
-						
-						// get rid of the assignment for an unused variable
-						removeList.add(var);
+				// The value which received the reference has changed
+				int owner = ownerOf(ref);
+				inlinedInto[i] = owner;
+				queue(owner);
+				// get rid of the assignment for an unused variable
+				remove(i);
+			}
+		}
+	}
+	
+	/**
+	 * Finds the literal which the variable always holds, if any. Implicit parameters hold the
+	 * value of the variable they are given.
+	 * @return the literal, or null if the variable is a function, or its value is not a literal
+	 */
+	protected Literal constantOf(Variable var) {
+		for (int hops = 0; externals.containsKey(var) && hops < externals.size(); hops++)
+			var = externals.get(var);
+		if (var == null || var.value == null || !(var.source instanceof Assignment) ||
+				((Assignment)var.source).getParamList() != null)
+			return null;
+		List<Subexpression> subs = var.value.getSubexpressions();
+		if (subs.size() == 1 && subs.get(0) instanceof Literal)
+			return (Literal)subs.get(0);
+		return null;
+	}
+	
+	/**
+	 * Replaces each reference to the variable with a copy of the literal it holds. The values
+	 * which held the references are visited again, since they may now be folded. Once nothing
+	 * references the variable, it is removed.
+	 */
+	protected void propagate(int i) {
+		Variable var = variables.get(i);
+		Literal constant = constantOf(var);
+		List<Reference> kept = new ArrayList<>();
+		for (Reference ref: var.references) {
+			Value parent = ref.getParent();
+			int replaceAt = (parent == null)? -1 : parent.getSubexpressions().indexOf(ref);
+			// A reference which is not found in its parent cannot be replaced
+			if (replaceAt == -1 || ref.getArgument() != null || ref.isMember()) {
+				kept.add(ref);
+				continue;
+			}
+			Literal copy = constant.clone();
+			copy.setParent(parent);
+			parent.getSubexpressions().set(replaceAt, copy);
+			count("propagated");
+			queue(ownerOf(ref));
+		}
+		if (kept.size() == var.references.size())
+			return;
+		var.references.clear();
+		var.references.addAll(kept);
+		// The implicit parameters given this variable hold the literal too
+		for (Variable param: externalParams.getOrDefault(var, List.of()))
+			queue(param);
+		if (kept.isEmpty())
+			remove(i);
+	}
+	
+	protected void remove(int i) {
+		Variable var = variables.get(i);
+		// Cannot remove parameters (or the implicit parameters for externalities)
+		if (!(var.source instanceof Assignment))
+			return;
+		// We need to delete it at its source, which is done in bulk for each block
+		Assignment source = (Assignment)var.source;
+		removed.add(source);
+		dirty.add(source.getParent());
+		// then we can remove it from the variables list to complete the change
+		variables.set(i, null);
+		count("removed");
+	}
+	
+	/**
+	 * Finds the variable whose value now holds the reference or block given.
+	 * @return the index of the variable, or -1 if it is not in any variable's value
+	 */
+	protected int ownerOf(Subexpression held) {
+		Integer owner = owners.get(held);
+		if (owner == null)
+			return -1;
+		int at = owner;
+		while (inlinedInto[at] != -1)
+			at = inlinedInto[at];
+		if (at != owner)
+			owners.put(held, at); // to speed up the next search
+		return at;
+	}
+	
+	/**
+	 * Records the owner of every block in the expression, and every reference which could be
+	 * replaced by the value of its variable. Nothing in the values of nested
+	 * assignments is recorded, since those are the values of other variables.
+	 */
+	protected void index(Expression e, int owner) {
+		if (e instanceof Value) {
+			for (Subexpression sub: ((Value)e).getSubexpressions())
+				index(sub, owner);
+		}else if (e instanceof Reference) {
+			Reference ref = (Reference)e;
+			if (replaceable(ref.getLinkedTo()))
+				owners.put(ref, owner);
+			if (ref.getArgument() != null)
+				index(ref.getArgument(), owner);
+			if (ref.getMemberData() != null && ref.getMemberData().location != null)
+				index(ref.getMemberData().location, owner);
+		}else if (e instanceof Operation) {
+			Operation op = (Operation)e;
+			index(op.getRHS(), owner);
+			if (op instanceof BinOp)
+				index(((BinOp)op).getLHS(), owner);
+		}else if (e instanceof If) {
+			If if_ = (If)e;
+			index(if_.getCondition(), owner);
+			index(if_.getThen(), owner);
+			index(if_.getElse(), owner);
+		}else if (e instanceof Block) {
+			Block block = (Block)e;
+			owners.put(block, owner);
+			for (Expression be: block.getBody()) {
+				if (!(be instanceof Assignment || be instanceof TypeDefinition))
+					index(be, owner);
+			}
+		}else if (e instanceof Tuple) {
+			for (Value arg: ((Tuple)e).getArgs())
+				index(arg, owner);
+		}
+	}
+	
+	/**
+	 * Decides whether references to the variable could be replaced by its value, which is when
+	 * the variable is not a function or parameter (except an implicit parameter).
+	 */
+	protected boolean replaceable(Variable var) {
+		if (var == null)
+			return false;
+		if (var.source instanceof Assignment)
+			return ((Assignment)var.source).getParamList() == null;
+		return externals.containsKey(var);
+	}
+	
+	/**
+	 * Searches the expression for calls which should be inlined, and inlines them.
+	 * @param e the expression to search
+	 * @param depth how many inlined calls the expression is nested in
+	 */
+	protected void inline(Expression e, int depth) {
+		if (e instanceof Value) {
+			Value val = (Value)e;
+			List<Subexpression> subs = val.getSubexpressions();
+			for (int i = 0; i < subs.size(); i++) {
+				Subexpression sub = subs.get(i);
+				Variable callee = null;
+				if (sub instanceof Reference) {
+					// The arguments are part of this call, not the one which may replace it
+					Reference ref = (Reference)sub;
+					inline(ref, depth);
+					callee = inlinable(ref, depth);
+				}else
+					inline(sub, depth);
+				if (callee == null)
+					continue;
+				Subexpression expanded = expand((Reference)sub, callee, val, i);
+				count("inlined calls");
+				inlining.push(callee);
+				inline(expanded, depth + 1);
+				inlining.pop();
+			}
+		}else if (e instanceof Reference) {
+			Reference ref = (Reference)e;
+			// The location of a method call is also its first argument
+			if (ref.getArgument() != null)
+				inline(ref.getArgument(), depth);
+			else if (ref.getMemberData() != null && ref.getMemberData().location != null)
+				inline(ref.getMemberData().location, depth);
+		}else if (e instanceof Operation) {
+			Operation op = (Operation)e;
+			inline(op.getRHS(), depth);
+			if (op instanceof BinOp)
+				inline(((BinOp)op).getLHS(), depth);
+		}else if (e instanceof If) {
+			If if_ = (If)e;
+			inline(if_.getCondition(), depth);
+			inline(if_.getThen(), depth);
+			inline(if_.getElse(), depth);
+		}else if (e instanceof Block) {
+			for (Expression be: ((Block)e).getBody()) {
+				if (be instanceof Assignment) {
+					Assignment asgn = (Assignment)be;
+					if (asgn.getParamList() == null)
+						inline(asgn.getValue(), depth);
+					else {
+						// A function may not be inlined into its own definition
+						inlining.push(asgn.getSourced());
+						inline(asgn.getValue(), 0);
+						inlining.pop();
 					}
-				}
+				}else if (!(be instanceof TypeDefinition))
+					inline(be, depth);
 			}
-			for (Variable var: removeList) {
-				// Cannot remove parameters
-				if (var.source instanceof Parameter) {
-					Classy.warnings.add("Unused " + var.source + ".");
+		}else if (e instanceof Tuple) {
+			for (Value arg: ((Tuple)e).getArgs())
+				inline(arg, depth);
+		}
+	}
+	
+	/**
+	 * Decides whether the reference is a call which should be inlined.
+	 * @return the function called, or null if the call should not be inlined
+	 */
+	protected Variable inlinable(Reference ref, int depth) {
+		// Methods may be overridden, so which is called is not known until runtime
+		if (ref.getArgument() == null || ref.isMember() || depth >= inlineDepth)
+			return null;
+		Variable callee = ref.getLinkedTo();
+		if (externals.containsKey(callee))
+			callee = externals.get(callee);
+		// Parameters and library functions have no value to inline
+		if (callee == null || callee.value == null || !(callee.source instanceof Assignment))
+			return null;
+		Assignment asgn = (Assignment)callee.source;
+		if (asgn.getParamList() == null || asgn.getPath() != null || inlining.contains(callee))
+			return null;
+		int size = measure(callee.value, callee);
+		if (size == -1 || (size > inlineSize && callee.references.size() > 1))
+			return null;
+		// Any parameter which is called must be given a function to call instead
+		List<LabeledValue> args = ((Tuple)ref.getArgument().getSubexpressions().get(0)).getArgs();
+		List<Parameter> params = asgn.getParamList();
+		for (int i = 0; i < params.size(); i++) {
+			for (Reference use: params.get(i).getSourced().references) {
+				if (use.getArgument() != null && !isPlainReference(args.get(i)))
+					return null;
+			}
+		}
+		return callee;
+	}
+	
+	/**
+	 * Finds the size of the value of a function, in the number of expressions within it.
+	 * @param e the value, or any expression within it
+	 * @param fx the function
+	 * @return the size, or -1 if the value cannot be inlined, since it defines functions or
+	 * types (which cannot be copied), or it calls the function recursively
+	 */
+	protected int measure(Expression e, Variable fx) {
+		int size = 1;
+		if (e instanceof Value) {
+			size = 0;
+			for (Subexpression sub: ((Value)e).getSubexpressions()) {
+				int subSize = measure(sub, fx);
+				if (subSize == -1)
+					return -1;
+				size += subSize;
+			}
+		}else if (e instanceof Reference) {
+			Reference ref = (Reference)e;
+			if (ref.getLinkedTo() == fx)
+				return -1;
+			Value inner = ref.getArgument();
+			if (inner == null && ref.getMemberData() != null)
+				inner = ref.getMemberData().location;
+			if (inner != null) {
+				int innerSize = measure(inner, fx);
+				if (innerSize == -1)
+					return -1;
+				size += innerSize;
+			}
+		}else if (e instanceof Operation) {
+			Operation op = (Operation)e;
+			int rhsSize = measure(op.getRHS(), fx);
+			int lhsSize = (op instanceof BinOp)? measure(((BinOp)op).getLHS(), fx) : 0;
+			if (rhsSize == -1 || lhsSize == -1)
+				return -1;
+			size += rhsSize + lhsSize;
+		}else if (e instanceof If) {
+			If if_ = (If)e;
+			int condSize = measure(if_.getCondition(), fx);
+			int thenSize = measure(if_.getThen(), fx);
+			int elseSize = measure(if_.getElse(), fx);
+			if (condSize == -1 || thenSize == -1 || elseSize == -1)
+				return -1;
+			size += condSize + thenSize + elseSize;
+		}else if (e instanceof Block) {
+			for (Expression be: ((Block)e).getBody()) {
+				if (be instanceof TypeDefinition)
+					return -1;
+				Value inner = null;
+				if (be instanceof Assignment) {
+					if (((Assignment)be).getParamList() != null)
+						return -1;
+					inner = ((Assignment)be).getValue();
+					size++;
+				}else if (be instanceof Value)
+					inner = (Value)be;
+				int innerSize = measure(inner, fx);
+				if (innerSize == -1)
+					return -1;
+				size += innerSize;
+			}
+		}else if (e instanceof Tuple) {
+			for (Value arg: ((Tuple)e).getArgs()) {
+				int argSize = measure(arg, fx);
+				if (argSize == -1)
+					return -1;
+				size += argSize;
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * Decides whether the value is only a literal or a reference to a variable, which can be
+	 * copied for each use without computing anything more.
+	 */
+	protected boolean isPlainReference(Value val) {
+		if (val.getSubexpressions().size() != 1)
+			return false;
+		Subexpression only = val.getSubexpressions().get(0);
+		return only instanceof Reference && ((Reference)only).getArgument() == null &&
+				!((Reference)only).isMember() && ((Reference)only).getLinkedTo() != null;
+	}
+	protected boolean isTrivial(Value val) {
+		return isPlainReference(val) || (val.getSubexpressions().size() == 1 &&
+				val.getSubexpressions().get(0) instanceof Literal);
+	}
+	
+	/**
+	 * Replaces the call with a copy of the value of the function called, where each use of a
+	 * parameter is replaced by its argument.
+	 * @param call the call to replace
+	 * @param callee the function called
+	 * @param at the value which holds the call
+	 * @param index the index of the call in the value
+	 * @return what replaced the call
+	 */
+	protected Subexpression expand(Reference call, Variable callee, Value at, int index) {
+		call.getLinkedTo().references.remove(call);
+		List<Parameter> params = ((Assignment)callee.source).getParamList();
+		List<LabeledValue> args = ((Tuple)call.getArgument().getSubexpressions().get(0)).getArgs();
+		// What each parameter is replaced with. Trivial values are copied for each use, but
+		//  any other is either moved to its only use, or bound to a new variable first.
+		Map<Variable, Value> replace = new HashMap<>();
+		Block bindings = null;
+		for (int i = 0; i < params.size(); i++) {
+			Variable param = params.get(i).getSourced();
+			Value arg = args.get(i);
+			int uses = param.references.size();
+			if (isTrivial(arg) || uses == 1)
+				replace.put(param, arg);
+			else if (uses == 0)
+				unlink(arg); // the argument is never used
+			else {
+				if (bindings == null)
+					bindings = new Block(at, false);
+				Value value = new Value(null, arg.getSubexpressions().toArray(new Subexpression[] {}));
+				OpenAssignment bound = new OpenAssignment(bindings, param.getName(), value);
+				Variable local = new Variable(param.getName(), value, bound);
+				local.setType(param.getType());
+				variables.add(local);
+				bindings.getBody().add(bound);
+				// Each use is a copy of a reference to the new variable
+				Reference use = new Reference(null);
+				use.setVarName(param.getName());
+				use.setLinkedTo(local);
+				use.setType(param.getType());
+				replace.put(param, new Value(null, use));
+			}
+		}
+		
+		Value body = callee.value.clone();
+		rebind(body, replace, new HashMap<>());
+		// The arguments which were copied for each use are not used themselves
+		for (Value arg: replace.values()) {
+			if (isTrivial(arg))
+				unlink(arg);
+		}
+		
+		Subexpression expanded = body;
+		if (body.getSubexpressions().size() == 1)
+			expanded = body.getSubexpressions().get(0);
+		if (bindings != null) {
+			bindings.getBody().add(body);
+			expanded = bindings;
+		}
+		at.getSubexpressions().set(index, expanded);
+		expanded.setParent(at);
+		return expanded;
+	}
+	
+	/**
+	 * Rebinds a copy of the value of a function to where the function was called.
+	 * @param e the copy, or some expression within it
+	 * @param replace what each parameter of the function is replaced by
+	 * @param renamed the new variable for each variable defined by the function
+	 */
+	protected void rebind(Expression e, Map<Variable, Value> replace, Map<Variable, Variable> renamed) {
+		if (e instanceof Value) {
+			Value val = (Value)e;
+			List<Subexpression> subs = val.getSubexpressions();
+			for (int i = 0; i < subs.size(); i++) {
+				Subexpression sub = subs.get(i);
+				Value with = null;
+				if (sub instanceof Reference)
+					with = replace.get(((Reference)sub).getLinkedTo());
+				if (with == null) {
+					rebind(sub, replace, renamed);
 					continue;
 				}
-				// We need to delete it at its source first
-				Block parent = ((Assignment)var.source).getParent();
-				parent.getBody().remove(var.source);
-				parent.reduce();
-				// then we can remove it from the variables list to complete the change
-				variables.remove(var);	
-				changesMade = true;
-			}
-		} while(changesMade);
+				Reference use = (Reference)sub;
+				use.getLinkedTo().references.remove(use);
+				if (use.getArgument() != null) {
+					// The parameter is called, so the function given for it is called instead
+					Reference fx = (Reference)with.getSubexpressions().get(0);
+					use.setLinkedTo(fx.getLinkedTo());
+					use.setVarName(fx.getVarName());
+					fx.getLinkedTo().addRef(use);
+					rebind(use.getArgument(), replace, renamed);
+				}else if (isTrivial(with)) {
+					Subexpression copy = with.getSubexpressions().get(0).clone();
+					copy.setParent(val);
+					subs.set(i, copy);
+				}else {
+					// The only use of the argument, so it can be moved here
+					List<Subexpression> moved = with.getSubexpressions();
+					subs.remove(i);
+					subs.addAll(i, moved);
+					for (Subexpression m: moved)
+						m.setParent(val);
+					i += moved.size() - 1;
+				}
+			}
+		}else if (e instanceof Reference) {
+			Reference ref = (Reference)e;
+			Variable local = renamed.get(ref.getLinkedTo());
+			if (local != null) {
+				ref.getLinkedTo().references.remove(ref);
+				ref.setLinkedTo(local);
+				local.addRef(ref);
+			}
+			if (ref.getArgument() != null)
+				rebind(ref.getArgument(), replace, renamed);
+			if (ref.getMemberData() != null && ref.getMemberData().location != null)
+				rebind(ref.getMemberData().location, replace, renamed);
+		}else if (e instanceof Operation) {
+			Operation op = (Operation)e;
+			rebind(op.getRHS(), replace, renamed);
+			if (op instanceof BinOp)
+				rebind(((BinOp)op).getLHS(), replace, renamed);
+		}else if (e instanceof If) {
+			If if_ = (If)e;
+			rebind(if_.getCondition(), replace, renamed);
+			rebind(if_.getThen(), replace, renamed);
+			rebind(if_.getElse(), replace, renamed);
+		}else if (e instanceof Block) {
+			for (Expression be: ((Block)e).getBody()) {
+				if (be instanceof Assignment) {
+					// The copied assignment is still sourced by the variable it was copied from
+					Assignment asgn = (Assignment)be;
+					Variable old = asgn.getSourced();
+					Variable local = new Variable(old.getName(), asgn.getValue(), asgn);
+					local.setType(old.getType());
+					variables.add(local);
+					renamed.put(old, local);
+					rebind(asgn.getValue(), replace, renamed);
+				}else
+					rebind(be, replace, renamed);
+			}
+		}else if (e instanceof Tuple) {
+			for (Value arg: ((Tuple)e).getArgs())
+				rebind(arg, replace, renamed);
+		}
+	}
+	
+	/**
+	 * Removes every reference in the expression from the variable it references, since the
+	 * expression is no longer in the program. Each variable referenced is visited again.
+	 */
+	protected void unlink(Expression e) {
+		if (e instanceof Value) {
+			for (Subexpression sub: ((Value)e).getSubexpressions())
+				unlink(sub);
+		}else if (e instanceof Reference) {
+			Reference ref = (Reference)e;
+			if (ref.getLinkedTo() != null && ref.getLinkedTo().references.remove(ref))
+				queue(ref.getLinkedTo());
+			if (ref.getArgument() != null)
+				unlink(ref.getArgument());
+			if (ref.getMemberData() != null && ref.getMemberData().location != null)
+				unlink(ref.getMemberData().location);
+		}else if (e instanceof Operation) {
+			Operation op = (Operation)e;
+			unlink(op.getRHS());
+			if (op instanceof BinOp)
+				unlink(((BinOp)op).getLHS());
+		}else if (e instanceof If) {
+			If if_ = (If)e;
+			unlink(if_.getCondition());
+			unlink(if_.getThen());
+			unlink(if_.getElse());
+		}else if (e instanceof Block) {
+			for (Expression be: ((Block)e).getBody()) {
+				if (be instanceof Assignment)
+					unlink(((Assignment)be).getValue());
+				else if (!(be instanceof TypeDefinition))
+					unlink(be);
+			}
+		}else if (e instanceof Tuple) {
+			for (Value arg: ((Tuple)e).getArgs())
+				unlink(arg);
+		}
+	}
+	
+	/**
+	 * A subexpression which may be repeated in its region.
+	 */
+	protected static class Occurrence {
+		protected final Subexpression sub;
+		// The value which holds the subexpression
+		protected Value in;
+		// The expression in the body of the region which holds the subexpression
+		protected Expression anchor;
+		// The number of expressions in the subexpression
+		protected final int size;
 		
-		// Then finally we make a run through the entire program
-		optimize(program);
+		public Occurrence(Subexpression sub, Value in, Expression anchor, int size) {
+			this.sub = sub;
+			this.in = in;
+			this.anchor = anchor;
+			this.size = size;
+		}
+	}
+	
+	/**
+	 * A block or value where, whenever any subexpression is evaluated, all are. Thus, any
+	 * subexpression which is repeated in the region may be evaluated once, before the first
+	 * expression of the body which holds it.
+	 * <p>
+	 * The branches of an if and the right side of a logical operation are regions of their own,
+	 * as are blocks and the values of functions, which may define their own variables.
+	 */
+	protected static class Region {
+		protected Value value;
+		protected Block block;
+		// The occurrences of each structure, and each occurrence by its subexpression
+		protected Map<Integer, List<List<Occurrence>>> byHash = new HashMap<>();
+		protected List<List<Occurrence>> groups = new ArrayList<>();
+		protected Map<Subexpression, Occurrence> found = new IdentityHashMap<>();
+		
+		public Region(Value value, Block block) {
+			this.value = value;
+			this.block = block;
+		}
+		
+		public void add(Occurrence occur) {
+			if (found.putIfAbsent(occur.sub, occur) != null)
+				return;
+			List<List<Occurrence>> bucket = byHash.computeIfAbsent(occur.sub.structuralHash(),
+					k -> new ArrayList<>(1));
+			for (List<Occurrence> group: bucket) {
+				if (group.get(0).sub.structurallyEquals(occur.sub)) {
+					group.add(occur);
+					return;
+				}
+			}
+			List<Occurrence> group = new ArrayList<>(2);
+			group.add(occur);
+			bucket.add(group);
+			groups.add(group);
+		}
+	}
+	
+	/**
+	 * Eliminates the common subexpressions of the value, and of every region nested in it.
+	 */
+	protected void eliminate(Value value) {
+		Region region = new Region(value, null);
+		collect(value, region, null);
+		bind(region);
+	}
+	protected void eliminate(Block block) {
+		Region region = new Region(null, block);
+		for (Expression be: block.getBody()) {
+			if (be instanceof Assignment) {
+				Assignment asgn = (Assignment)be;
+				if (asgn.getParamList() == null)
+					collect(asgn.getValue(), region, asgn);
+				else
+					eliminate(asgn.getValue());
+			}else if (!(be instanceof TypeDefinition))
+				collect(be, region, be);
+		}
+		bind(region);
+	}
+	
+	/**
+	 * Finds each operation and call in the expression which is part of the region given,
+	 * eliminating the common subexpressions of any region nested in it.
+	 * @param anchor the expression in the body of the region which holds the expression
+	 * @return the size of the expression, counting only what is in the region
+	 */
+	protected int collect(Expression e, Region region, Expression anchor) {
+		int size = 1;
+		if (e instanceof Value) {
+			Value val = (Value)e;
+			size = 0;
+			for (Subexpression sub: val.getSubexpressions()) {
+				int subSize = collect(sub, region, anchor);
+				if (sub instanceof Operation ||
+						(sub instanceof Reference && ((Reference)sub).getArgument() != null))
+					region.add(new Occurrence(sub, val, anchor, subSize));
+				size += subSize;
+			}
+		}else if (e instanceof Reference) {
+			Reference ref = (Reference)e;
+			// The location of a method call is also its first argument
+			if (ref.getArgument() != null)
+				size += collect(ref.getArgument(), region, anchor);
+			else if (ref.getMemberData() != null && ref.getMemberData().location != null)
+				size += collect(ref.getMemberData().location, region, anchor);
+		}else if (e instanceof Operation) {
+			Operation op = (Operation)e;
+			if (op instanceof BinOp)
+				size += collect(((BinOp)op).getLHS(), region, anchor);
+			// The right side of a logical operation may not be evaluated
+			if (op instanceof BinOp.And || op instanceof BinOp.Or)
+				eliminate(op.getRHS());
+			else
+				size += collect(op.getRHS(), region, anchor);
+		}else if (e instanceof If) {
+			If if_ = (If)e;
+			size += collect(if_.getCondition(), region, anchor);
+			eliminate(if_.getThen());
+			eliminate(if_.getElse());
+		}else if (e instanceof Block)
+			eliminate((Block)e);
+		else if (e instanceof Tuple) {
+			for (Value arg: ((Tuple)e).getArgs())
+				size += collect(arg, region, anchor);
+		}
+		return size;
+	}
+	
+	/**
+	 * Binds each subexpression repeated in the region to a new variable, which replaces every
+	 * occurrence. The largest repeats are bound first, since those may hold smaller ones.
+	 */
+	protected void bind(Region region) {
+		List<List<Occurrence>> repeats = new ArrayList<>();
+		for (List<Occurrence> group: region.groups) {
+			if (group.size() > 1)
+				repeats.add(group);
+		}
+		repeats.sort((a, b) -> b.get(0).size - a.get(0).size);
+		// Occurrences within a replaced occurrence are gone
+		Set<Subexpression> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (List<Occurrence> group: repeats) {
+			List<Occurrence> live = new ArrayList<>(group.size());
+			for (Occurrence occur: group) {
+				if (!gone.contains(occur.sub))
+					live.add(occur);
+			}
+			if (live.size() < 2)
+				continue;
+			if (region.block == null)
+				wrap(region);
+			List<Expression> body = region.block.getBody();
+			// The first occurrence is moved into the binding, which comes before the others
+			Occurrence first = live.get(0);
+			for (Occurrence occur: live) {
+				if (body.indexOf(occur.anchor) < body.indexOf(first.anchor))
+					first = occur;
+			}
+			Subexpression common = first.sub;
+			String name = "+cse" + commonCount++;
+			Value value = new Value(null, common);
+			OpenAssignment bound = new OpenAssignment(region.block, name, value);
+			Variable var = new Variable(name, value, bound);
+			var.setType(typeOf(common));
+			variables.add(var);
+			Reference use = new Reference(null);
+			use.setVarName(name);
+			use.setLinkedTo(var);
+			use.setType(var.getType());
+			for (Occurrence occur: live) {
+				List<Subexpression> subs = occur.in.getSubexpressions();
+				Reference copy = use.clone();
+				copy.setParent(occur.in);
+				subs.set(subs.indexOf(occur.sub), copy);
+				if (occur == first)
+					continue;
+				unlink(occur.sub);
+				within(occur.sub, region, inner -> gone.add(inner.sub));
+				count("eliminated");
+			}
+			body.add(body.indexOf(first.anchor), bound);
+			within(common, region, inner -> inner.anchor = bound);
+		}
+	}
+	
+	/**
+	 * Moves the value of the region into a block, which can hold the bindings of its repeats.
+	 */
+	protected void wrap(Region region) {
+		List<Subexpression> subs = region.value.getSubexpressions();
+		Value inner = new Value(region.value, subs.toArray(new Subexpression[] {}));
+		Block block = new Block(region.value, false);
+		block.getBody().add(inner);
+		subs.clear();
+		subs.add(block);
+		region.block = block;
+		for (Occurrence occur: region.found.values()) {
+			if (occur.in == region.value)
+				occur.in = inner;
+			occur.anchor = inner;
+		}
+	}
+	
+	/**
+	 * Performs the action for each occurrence in the region which is within the subexpression.
+	 */
+	protected void within(Expression e, Region region, Consumer<Occurrence> action) {
+		if (e instanceof Subexpression) {
+			Occurrence occur = region.found.get(e);
+			if (occur != null)
+				action.accept(occur);
+		}
+		if (e instanceof Value) {
+			for (Subexpression sub: ((Value)e).getSubexpressions())
+				within(sub, region, action);
+		}else if (e instanceof Reference) {
+			Reference ref = (Reference)e;
+			if (ref.getArgument() != null)
+				within(ref.getArgument(), region, action);
+			else if (ref.getMemberData() != null && ref.getMemberData().location != null)
+				within(ref.getMemberData().location, region, action);
+		}else if (e instanceof Operation) {
+			Operation op = (Operation)e;
+			if (op instanceof BinOp)
+				within(((BinOp)op).getLHS(), region, action);
+			within(op.getRHS(), region, action);
+		}else if (e instanceof If)
+			within(((If)e).getCondition(), region, action);
+		else if (e instanceof Tuple) {
+			for (Value arg: ((Tuple)e).getArgs())
+				within(arg, region, action);
+		}
+	}
+	
+	/**
+	 * @return the type of the result of the operation or call
+	 */
+	protected Type typeOf(Subexpression sub) {
+		if (sub instanceof Reference)
+			return (((Reference)sub).getType() == null)? Type.Any : ((Reference)sub).getType();
+		if (sub instanceof Operation.Not || sub instanceof BinOp.And || sub instanceof BinOp.Or ||
+				sub instanceof BinOp.Equal || sub instanceof BinOp.NEqual ||
+				sub instanceof BinOp.LessThan || sub instanceof BinOp.LessEqual ||
+				sub instanceof BinOp.GreaterThan || sub instanceof BinOp.GreaterEqual)
+			return Type.Bool;
+		return Type.Int;
+	}
+	
+	/**
+	 * An assignment made by the optimizer, rather than parsed from the source.
+	 */
+	protected static class OpenAssignment extends Assignment {
+		public OpenAssignment(Block parent, String varName, Value value) {
+			super(parent);
+			this.varName = varName;
+			this.value = value;
+		}
+	}
+	
+	/**
+	 * A literal made by the optimizer, which holds the result found for some expression.
+	 */
+	protected static class OpenLiteral extends Literal {
+		public OpenLiteral(Value parent, String result) {
+			super(parent);
+			if (result.equals("true"))
+				this.startToken = new Token(result, Token.Type.TRUE, -1, -1);
+			else if (result.equals("false"))
+				this.startToken = new Token(result, Token.Type.FALSE, -1, -1);
+			else
+				this.startToken = new Token(result, Token.Type.NUMBER, -1, -1);
+		}
 	}
 	
 	protected void optimize(Expression e) {
 		if (e instanceof Operation)
 			optimize((Operation)e);
+		if (e instanceof Reference)
+			optimize((Reference)e);
 		if (e instanceof Value)
 			optimize((Value)e);
 		if (e instanceof Block)
@@ -93,35 +1130,58 @@ public class Optimizer {
 		// We had to check after the children were checked since they could have been in blocks
 		//  that would now be reduced.
 		Value rhs = op.getRHS();
+		if (op instanceof BinOp.And || op instanceof BinOp.Or) {
+			// The right is never found if the left decides the result, so it must not be folded
+			//  (nor its calls evaluated) unless the left does not
+			Value lhs = ((BinOp)op).getLHS();
+			optimize(lhs);
+			if (lhs.getSubexpressions().size() == 1 && lhs.getSubexpressions().get(0) instanceof Literal) {
+				boolean left = ((Literal)lhs.getSubexpressions().get(0)).getToken().getValue().equals("true");
+				if (left == op instanceof BinOp.Or) {
+					// Whatever the right uses is no longer used
+					unlink(rhs);
+					fold(op, Boolean.toString(left));
+					return;
+				}
+			}
+		}
 		optimize(rhs);
+		// Both sides are optimized, even if the operation cannot fold, since each may hold calls
+		//  which can be evaluated
+		if (op instanceof BinOp && !(op instanceof BinOp.And || op instanceof BinOp.Or))
+			optimize(((BinOp)op).getLHS());
 		if (rhs.getSubexpressions().size() == 1 && rhs.getSubexpressions().get(0) instanceof Literal) {
 			String result = "";
 			
 			if (op instanceof BinOp) {
 				BinOp bop = (BinOp)op;
 				Value lhs = bop.getLHS();
-				optimize(lhs);
 				if (lhs.getSubexpressions().size() == 1 &&
 						lhs.getSubexpressions().get(0) instanceof Literal) {
 					
 					// Split by the numeric operations and the boolean ones
 					if (op instanceof BinOp.And || op instanceof BinOp.Or) {
+						// The left does not decide the result, else it would have been folded already
 						boolean isAnd = op instanceof BinOp.And;
 						boolean left = ((Literal)lhs.getSubexpressions().get(0)).getToken().getValue().equals("true");
-						// short circuit
-						if (left && !isAnd)
-							result += "true";
-						if (!left && isAnd)
-							result += "false";
-						// Now we try the simplification with the other
 						boolean right = ((Literal)rhs.getSubexpressions().get(0)).getToken().getValue().equals("true");
 						if (isAnd)
 							result += (left && right);
 						else
 							result += (left || right);
 					}else {
-						int left = Integer.parseInt(((Literal)lhs.getSubexpressions().get(0)).getToken().getValue());
-						int right = Integer.parseInt(((Literal)rhs.getSubexpressions().get(0)).getToken().getValue());
+						int left, right;
+						try {
+							left = Evaluator.parseNumber(((Literal)lhs.getSubexpressions().get(0)).getToken().getValue());
+							right = Evaluator.parseNumber(((Literal)rhs.getSubexpressions().get(0)).getToken().getValue());
+						}catch (NumberFormatException tooLong) {
+							return;
+						}
+						// These would trap at runtime, which is left for the program to do (if it
+						//  is ever reached)
+						if ((op instanceof BinOp.Division || op instanceof BinOp.Modulus) &&
+								(right == 0 || (left == Integer.MIN_VALUE && right == -1)))
+							return;
 						
 						if (op instanceof BinOp.Addition)
 							result += left + right;
@@ -154,7 +1214,12 @@ public class Optimizer {
 					return;
 				}
 			} else if (op instanceof Operation.Negation) {
-				int right = Integer.parseInt(((Literal)rhs.getSubexpressions().get(0)).getToken().getValue());
+				int right;
+				try {
+					right = Evaluator.parseNumber(((Literal)rhs.getSubexpressions().get(0)).getToken().getValue());
+				}catch (NumberFormatException tooLong) {
+					return;
+				}
 				result += -right;
 			} else if (op instanceof Operation.Not) {
 				boolean right = ((Literal)rhs.getSubexpressions().get(0)).getToken().getValue().equals("true");
@@ -163,30 +1228,57 @@ public class Optimizer {
 				throw new CheckException("Unoptimized Operation Type! ", op);
 			
 			// If we made it here, we assume that the simplification was successful
-			// remove self from the parent and replace with a literal
-			Value parent = op.getParent();
-			int found = parent.getSubexpressions().indexOf(op);
-			if (found != -1) {
-				parent.getSubexpressions().remove(found);
-				class OpenLiteral extends Literal {
-					public OpenLiteral(Value parent, Token t) {
-						super(parent);
-						this.startToken = t;
-					}
-				}
-				Token newToken;
-				if (result.equals("true"))
-					newToken = new Token(result, Token.Type.TRUE, -1, -1);
-				else if (result.equals("false"))
-					newToken = new Token(result, Token.Type.FALSE, -1, -1);
-				else
-					newToken = new Token(result, Token.Type.NUMBER, -1, -1);
-				Literal lit = new OpenLiteral(parent, newToken);					
-				parent.getSubexpressions().add(found, lit);
-			}
+			fold(op, result);
 		}
 	}
 	
+	/**
+	 * Removes the operation from its parent, replacing it with a literal of its result.
+	 */
+	protected void fold(Operation op, String result) {
+		Value parent = op.getParent();
+		int found = parent.getSubexpressions().indexOf(op);
+		if (found != -1) {
+			count("folded");
+			parent.getSubexpressions().remove(found);
+			parent.getSubexpressions().add(found, new OpenLiteral(parent, result));
+		}
+	}
+	
+	protected void optimize(Reference ref) {
+		if (ref.getArgument() == null)
+			return;
+		// The arguments may fold into literals, after which the call can be evaluated
+		boolean known = !ref.isMember() && evalSteps > 0;
+		for (Value arg: Evaluator.argsOf(ref)) {
+			optimize(arg);
+			List<Subexpression> subs = arg.getSubexpressions();
+			known &= subs.size() == 1 && (subs.get(0) instanceof Literal || isFunction(subs.get(0)));
+		}
+		if (!known || unevaluated.contains(ref))
+			return;
+		Object result = new Evaluator(evalSteps).evaluate(ref);
+		if (result == null)
+			unevaluated.add(ref);
+		Value parent = ref.getParent();
+		int found = parent.getSubexpressions().indexOf(ref);
+		if (result != null && found != -1) {
+			count("evaluated");
+			// Whatever the call used is no longer used by it
+			unlink(ref);
+			parent.getSubexpressions().set(found, new OpenLiteral(parent, result.toString()));
+		}
+	}
+	/**
+	 * @return whether the subexpression names a function, which may be given to a call
+	 */
+	protected boolean isFunction(Subexpression sub) {
+		if (!(sub instanceof Reference) || ((Reference)sub).getArgument() != null || ((Reference)sub).isMember())
+			return false;
+		Variable var = ((Reference)sub).getLinkedTo();
+		return var != null && var.source instanceof Assignment && ((Assignment)var.source).getParamList() != null;
+	}
+	
 	protected void optimize(Value val) {
 		List<Subexpression> sub = val.getSubexpressions();
 		for (int i = 0; i < sub.size(); i++) {
@@ -226,6 +1318,9 @@ public class Optimizer {
 			optimize(replaceWith);
 			int ifAt = if_.getParent().getSubexpressions().indexOf(if_);
 			if (ifAt != -1) {
+				count("pruned");
+				// Whatever the discarded branch uses is no longer used
+				unlink((replaceWith == if_.getThen())? if_.getElse() : if_.getThen());
 				List<Subexpression> parList = if_.getParent().getSubexpressions();
 				parList.remove(ifAt);
 				parList.add(ifAt, replaceWith);
@@ -0,0 +1,189 @@
+package classy.compiler.analyzing;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import classy.compiler.lexing.Token;
+import classy.compiler.parsing.Assignment;
+import classy.compiler.parsing.BinOp;
+import classy.compiler.parsing.Block;
+import classy.compiler.parsing.Expression;
+import classy.compiler.parsing.If;
+import classy.compiler.parsing.Literal;
+import classy.compiler.parsing.Operation;
+import classy.compiler.parsing.Reference;
+import classy.compiler.parsing.Subexpression;
+import classy.compiler.parsing.Tuple;
+import classy.compiler.parsing.TypeDefinition;
+import classy.compiler.parsing.Value;
+
+/**
+ * Finds what the result of the program may depend on: the variables it uses (and the functions
+ * and methods those call, transitively), and the types which may have objects at runtime.
+ * <p>
+ * Unlike the references of a variable, this is found from the result of the program, so
+ * functions which are only called by each other (or themselves) are not reached.
+ */
+public class Reachability {
+	protected Set<Variable> reached = new HashSet<>();
+	// The types which may have objects (whose tag is the id of that type) at runtime
+	protected Set<Type> instantiated = new HashSet<>();
+	// The types whose structures are used to access the fields of an object
+	protected Set<Type> accessed = new HashSet<>();
+	// The type constructed by each constructor
+	protected Map<Variable, Type> constructors = new HashMap<>();
+	// The type of the result of the program, which is the only value printed
+	protected Type printed;
+
+	protected Deque<Expression> worklist = new ArrayDeque<>();
+
+	public Reachability(Value program, List<Type> types, Type printed) {
+		this.printed = printed;
+		for (Type type: types) {
+			if (type.getMethods() == null)
+				continue;
+			Variable constructor = type.getMethods().get("..new" + type.getName());
+			if (constructor != null)
+				constructors.put(constructor, type);
+		}
+		// The result is always printed, which is dispatched on its type
+		reach(Type.Any.getMethods().get("..print"));
+		worklist.add(program);
+		while (!worklist.isEmpty())
+			visit(worklist.remove());
+	}
+
+	protected void reach(Variable var) {
+		if (var == null || !reached.add(var))
+			return;
+		// An override is called through the method it overrides, which may select any override
+		if (!var.isOverridden())
+			reach(var.getOverrides().get(0));
+		else {
+			for (Variable override: var.getOverrides())
+				reach(override);
+		}
+		if (var.getValue() != null)
+			worklist.add(var.getValue());
+		Type constructed = constructors.get(var);
+		if (constructed != null)
+			instantiated.add(constructed);
+	}
+
+	protected void visit(Expression e) {
+		if (e instanceof Value) {
+			for (Subexpression sub: ((Value)e).getSubexpressions())
+				visit(sub);
+		}else if (e instanceof Reference) {
+			Reference ref = (Reference)e;
+			reach(ref.getLinkedTo());
+			if (ref.getArgument() != null)
+				visit(ref.getArgument());
+			if (ref.getMemberData() != null) {
+				if (ref.getMemberData().location != null)
+					visit(ref.getMemberData().location);
+				if (ref.getMemberData().memberOf != null)
+					accessed.add(ref.getMemberData().memberOf);
+			}
+		}else if (e instanceof Literal) {
+			Token.Type kind = ((Literal)e).getToken().getType();
+			instantiated.add((kind == Token.Type.NUMBER)? Type.Int : Type.Bool);
+		}else if (e instanceof Operation) {
+			Operation op = (Operation)e;
+			// Arithmetic makes an integer, and any other operation makes a boolean
+			if (op instanceof Operation.Negation || op instanceof BinOp.Addition ||
+					op instanceof BinOp.Subtraction || op instanceof BinOp.Multiplication ||
+					op instanceof BinOp.Division || op instanceof BinOp.Modulus)
+				instantiated.add(Type.Int);
+			else
+				instantiated.add(Type.Bool);
+			visit(op.getRHS());
+			if (op instanceof BinOp)
+				visit(((BinOp)op).getLHS());
+		}else if (e instanceof If) {
+			If if_ = (If)e;
+			visit(if_.getCondition());
+			visit(if_.getThen());
+			visit(if_.getElse());
+		}else if (e instanceof Block) {
+			// Assignments are only reached through references to them
+			for (Expression be: ((Block)e).getBody()) {
+				if (!(be instanceof Assignment || be instanceof TypeDefinition))
+					visit(be);
+			}
+		}else if (e instanceof Tuple) {
+			for (Value arg: ((Tuple)e).getArgs())
+				visit(arg);
+		}
+	}
+
+	/**
+	 * @return whether the variable may be used in finding the result of the program
+	 */
+	public boolean reaches(Variable var) {
+		return reached.contains(var);
+	}
+
+	/**
+	 * @return whether there may be an object of the type at runtime
+	 */
+	public boolean instantiates(Type type) {
+		return instantiated.contains(type);
+	}
+
+	/**
+	 * Decides whether the structure of the type is needed, which is when it has objects (or
+	 * descendants with objects), or the fields of some object are accessed as that type.
+	 */
+	public boolean uses(Type type) {
+		if (accessed.contains(type))
+			return true;
+		for (Type object: instantiated) {
+			if (object.isa(type))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Decides whether dynamic dispatch could select the override, which is when the method it
+	 * overrides is reached, and there may be objects of a type which selects it (its own, or a
+	 * descendant which inherits it).
+	 */
+	public boolean dispatches(Variable override) {
+		Variable overridden = override.getOverrides().get(0);
+		if (!reached.contains(overridden))
+			return false;
+		for (Type object: instantiated) {
+			Member selected = object.getMember(overridden.getName());
+			if (selected == null || selected.getVariable() != override)
+				continue;
+			// Printing is only called on the result of the program, so only types of the result apply
+			if (overridden.getName().equals("..print") && printed != null && printed.isFrozen() &&
+					!object.isa(printed))
+				continue;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the type of the result of the program, which is printed
+	 */
+	public Type getPrinted() {
+		return printed;
+	}
+
+	/**
+	 * @return whether the assignment defines something which may be used
+	 */
+	public boolean reaches(Assignment asgn) {
+		return asgn.getSourced() == null || reached.contains(asgn.getSourced());
+	}
+
+}
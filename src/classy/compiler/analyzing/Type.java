@@ -1,9 +1,11 @@
 package classy.compiler.analyzing;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import classy.compiler.parsing.TypeDefinition;
 
@@ -17,21 +19,26 @@ public class Type {
 		// We need to give some attributes to our built-in types
 		Variable print = new Variable("..print", null, null);
 		print.type = new Type(null, new ParameterType("this", Type.Any));
-		Any.methods.put("..print", print);
+		Any.addMethod(print);
 		
 		Variable printi = new Variable("..print", null, null);
 		printi.type = new Type(null, new ParameterType("this", Type.Int));
 		printi.setOverrides(print);
-		Int.methods.put(printi.name, printi);
+		Int.addMethod(printi);
 		Variable iNew = new Variable("..newInt", null, null); // the constructor
-		Int.methods.put(iNew.name, iNew);
+		Int.addMethod(iNew);
 		
 		Variable printb = new Variable("..print", null, null);
 		printb.type = new Type(null, new ParameterType("this", Type.Bool));
 		printb.setOverrides(print);
-		Bool.methods.put(printb.name, printb);
+		Bool.addMethod(printb);
 		Variable bNew = new Variable("..newBool", null, null); // the constructor
-		Bool.methods.put(bNew.name, bNew);
+		Bool.addMethod(bNew);
+		
+		// The checker gives every other type the next id after these
+		Any.freeze(0);
+		Int.freeze(1);
+		Bool.freeze(2);
 	}
 	
 	// Nominal type
@@ -45,19 +52,36 @@ public class Type {
 	
 	protected TypeDefinition source = null;
 	
+	// The place of a nominal type in the frozen hierarchy. Ids are given to parents before their
+	//  children, so a type's ancestors always have smaller ids than the type itself.
+	protected int id = -1;
+	// A bit set (by id) of this type and all its ancestors
+	protected long[] ancestors = null;
+	// This type and all its ancestors, sorted by id
+	protected Type[] ancestry = null;
+	
+	// Every member of this type, including those inherited, by name. Since a member may be added
+	//  to a type after its descendants are defined, the table is dropped (null) when this type
+	//  or any ancestor gains a member, and rebuilt on the next lookup.
+	protected Map<String, Member> members = null;
+	// The frozen types which have this as a parent. They are held weakly, since the built-in
+	//  types outlive the types of any one program.
+	protected List<WeakReference<Type>> children = null;
+	
 	private Type() {
 		// for creating any. All other types get a default parent in construction
 		name = "Any";
-		fields = new HashMap<>();
+		fields = new LinkedHashMap<>();
 		methods = new HashMap<>();
 		// put the constructor
 		Variable var = new Variable("..newAny", null, null);
 		var.type = new Type(this);
-		methods.put("..new"+name, var);
+		addMethod(var);
 	}
 	public Type(String name) {
 		this.name = name;
-		fields = new HashMap<>();
+		// Fields are kept in the order they are defined, which is the order of their slots
+		fields = new LinkedHashMap<>();
 		methods = new HashMap<>();
 		parents = new Type[]{Any};
 	}
@@ -71,16 +95,71 @@ public class Type {
 		this.inputs = inputs;
 	}
 	
+	/**
+	 * Freezes the place of this type in the hierarchy, after which its parents may not change.
+	 * All of its parents must already be frozen.
+	 * @param id the id for this type, which must be greater than the id of any frozen type
+	 */
+	protected void freeze(int id) {
+		this.id = id;
+		ancestors = new long[(id >>> 6) + 1];
+		ancestors[id >>> 6] |= 1L << id;
+		if (parents != null) {
+			for (Type parent: parents) {
+				// A parent may be missing (or this type itself) if its definition was bad
+				if (parent == null || !parent.isFrozen())
+					continue;
+				for (int i = 0; i < parent.ancestors.length; i++)
+					ancestors[i] |= parent.ancestors[i];
+				if (parent.children == null)
+					parent.children = new ArrayList<>();
+				parent.children.add(new WeakReference<>(this));
+			}
+		}
+		// Any members found before the parents were known are found again
+		dropMembers();
+		
+		int count = 0;
+		for (long word: ancestors)
+			count += Long.bitCount(word);
+		ancestry = new Type[count];
+		int at = 0;
+		for (int i = 0; i < ancestors.length; i++) {
+			for (long word = ancestors[i]; word != 0; word &= word - 1) {
+				int ancestorId = (i << 6) + Long.numberOfTrailingZeros(word);
+				ancestry[at++] = (ancestorId == id)? this : inherited(ancestorId);
+			}
+		}
+	}
+	
+	private Type inherited(int id) {
+		for (Type parent: parents) {
+			if (parent != null && parent.isFrozen() && parent.hasAncestor(id))
+				return parent.ancestor(id);
+		}
+		return null;
+	}
+	
+	public boolean isFrozen() {
+		return ancestors != null;
+	}
+	
+	protected boolean hasAncestor(int id) {
+		int word = id >>> 6;
+		return word < ancestors.length && (ancestors[word] & (1L << id)) != 0;
+	}
+	
 	/**
 	 * Returns whether this type is a subclass or descendant of the specified parent type.
-	 * Internally uses {@link #isa(Type, Set)} to avoid redundant checks.
+	 * If both types are frozen, this is a single test in the ancestor set of this type.
 	 * @param parent the other type that this may be a descendant of
 	 * @return whether this type is indeed a descendant of the given parent
 	 */
 	public boolean isa(Type parent) {
 		if (!isFunction() && !parent.isFunction()) {
-			Set<Type> checked = new HashSet<>();
-			return isa(parent, checked);			
+			if (isFrozen() && parent.isFrozen())
+				return hasAncestor(parent.id);
+			return isaWalk(parent);
 		}else if (isFunction() && parent.isFunction()) {
 			// For a function, "is a" is more complicated
 			// We need to verify that each of the parameters are subtypes of their counterparts
@@ -118,23 +197,20 @@ public class Type {
 		return parent.equals(Type.Any);
 	}
 	/**
-	 * The recursive call of {@link #isa(Type)}. Uses a set of checked types to avoid
-	 * double checking the same inheritance trees.
+	 * The recursive call of {@link #isa(Type)} for when either type is not yet frozen, such as
+	 * a type which is still being defined, or an undetermined type. The walk stops at the
+	 * first frozen parent.
 	 * @param parent the type to check if this is a descendant of
-	 * @param checked the set of types that have already been checked
 	 * @return whether this type is indeed a desendant of the given parent
 	 */
-	protected boolean isa(Type parent, Set<Type> checked) {
+	protected boolean isaWalk(Type parent) {
 		if (this.equals(parent)) // if they are of same type
 			return true;
-		if (checked.contains(this))
-			return false; // we already checked this and all supers
-		
-		checked.add(this);
 		if (parents == null)
 			return false;
 		for (Type myParent: parents) {
-			if (myParent.isa(parent, checked))
+			// A type cannot be its own ancestor, even if it was defined that way
+			if (myParent != null && myParent != this && myParent.isa(parent))
 				return true;
 		}
 		return false;
@@ -143,46 +219,131 @@ public class Type {
 	/**
 	 * Finds how the two types match. This may be a subclass of other or reverse.
 	 * Alternatively, there could be a common ancestor between the two.
+	 * <p>
+	 * If both types are frozen, the most specific common ancestor is the one with the greatest
+	 * id in the intersection of their ancestor sets.
 	 * @param other the other type
 	 * @return the intersection of the two types, null if none
 	 */
 	protected Type intersect(Type other) {
-		Set<Type> ones = new HashSet<>();
-		Set<Type> twos = new HashSet<>();
+		if (this == other)
+			return this;
+		if (isFrozen() && other.isFrozen()) {
+			int words = Math.min(ancestors.length, other.ancestors.length);
+			for (int i = words - 1; i >= 0; i--) {
+				long common = ancestors[i] & other.ancestors[i];
+				if (common != 0)
+					return ancestor((i << 6) + 63 - Long.numberOfLeadingZeros(common));
+			}
+			return null;
+		}
 		
-		// We go through and try to find any intersection between ones, which
-		//  is all the ancestors of this, and twos, all the ancestors of other
-		ones.add(this);
-		if (ones.contains(other))
+		if (other.isa(this))
+			return this;
+		if (isa(other))
 			return other;
-		twos.add(other);
-		
-		boolean changed;
-		Set<Type> temp = new HashSet<>();
-		do {
-			changed = false;
-			for (Type one: ones) {
-				for (Type p1: one.parents) {
-					if (twos.contains(p1))
-						return p1;
-					changed &= temp.add(p1);
-				}
+		// An unfrozen nominal type is either undetermined or still being defined, and there is
+		//  nothing more specific to find for either
+		if (!isFunction() && !other.isFunction())
+			return Any;
+		return null;
+	}
+	
+	/**
+	 * Finds the ancestor of this frozen type which has the given id.
+	 */
+	protected Type ancestor(int id) {
+		for (int i = ancestry.length - 1; i >= 0; i--) {
+			if (ancestry[i].id == id)
+				return ancestry[i];
+		}
+		return null;
+	}
+	
+	public void addField(Variable field) {
+		fields.put(field.name, field);
+		dropMembers();
+	}
+	public void addMethod(Variable method) {
+		methods.put(method.name, method);
+		dropMembers();
+	}
+	
+	/**
+	 * Drops the member table of this type and every descendant, to be rebuilt when next used.
+	 * A table is only built once those of the parents are, so a descendant of a type without
+	 * one cannot have one either.
+	 */
+	protected void dropMembers() {
+		if (members == null)
+			return;
+		members = null;
+		if (children == null)
+			return;
+		for (int i = children.size() - 1; i >= 0; i--) {
+			Type child = children.get(i).get();
+			if (child == null)
+				children.remove(i);
+			else
+				child.dropMembers();
+		}
+	}
+	
+	/**
+	 * Finds the member of this type with the given name, which may be inherited. A member
+	 * defined by this type is found before any inherited, and the members of earlier parents
+	 * are found before those of later parents.
+	 * @param name the name of the member to find
+	 * @return the member, or null if this type has no such member
+	 */
+	public Member getMember(String name) {
+		Map<String, Member> members = getMembers();
+		return (members == null)? null : members.get(name);
+	}
+	
+	/**
+	 * @return every member of this type, including those inherited, by name. Null if this is a
+	 * function type, which has no members.
+	 */
+	public Map<String, Member> getMembers() {
+		if (fields == null)
+			return null;
+		if (members == null)
+			flattenMembers();
+		return members;
+	}
+	
+	protected void flattenMembers() {
+		Map<String, Member> members = new HashMap<>();
+		int slot = firstFieldSlot();
+		for (Variable field: fields.values())
+			members.put(field.name, new Member(this, slot++, field));
+		for (Variable method: methods.values())
+			members.putIfAbsent(method.name, new Member(this, -1, method));
+		if (parents != null) {
+			for (Type parent: parents) {
+				if (parent == null || parent == this)
+					continue;
+				for (Map.Entry<String, Member> inherited: parent.getMembers().entrySet())
+					members.putIfAbsent(inherited.getKey(), inherited.getValue());
 			}
-			ones.addAll(temp);
-			temp.clear();
-			
-			for (Type two: twos) {
-				for (Type p2: two.parents) {
-					if (ones.contains(p2))
-						return p2;
-					changed &= temp.add(p2);
-				}
+		}
+		this.members = members;
+	}
+	
+	/**
+	 * Gets the slot of the first field in the structure for this type. Slot 0 is the type tag,
+	 * which is followed by a slot for each parent other than Any.
+	 */
+	public int firstFieldSlot() {
+		int slot = 1;
+		if (parents != null) {
+			for (Type parent: parents) {
+				if (!Any.equals(parent))
+					slot++;
 			}
-			twos.addAll(temp);
-			temp.clear();
-		}while (changed);
-		
-		return null;
+		}
+		return slot;
 	}
 	
 	public boolean isFunction() {
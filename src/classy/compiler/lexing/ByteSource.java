@@ -0,0 +1,107 @@
+package classy.compiler.lexing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The raw bytes of a source seen as characters, so that the {@link TableLexer} can read
+ * straight from a memory-mapped file (or the buffer standard input was read into) without the
+ * source being cut into lines first.
+ * <p>
+ * Each byte is one character, which is only correct for ASCII text. A source with any other
+ * byte is decoded in full (with the default charset, just as {@link java.util.Scanner} would)
+ * by {@link #of(ByteBuffer)} instead.
+ */
+public class ByteSource implements CharSequence {
+	protected ByteBuffer bytes;
+
+	protected ByteSource(ByteBuffer bytes) {
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Views all the bytes from the position to the limit of the buffer as a source.
+	 * @param bytes the source bytes. The buffer should not be modified afterward.
+	 * @return the source, which is a {@link ByteSource} if all the bytes are ASCII
+	 */
+	public static CharSequence of(ByteBuffer bytes) {
+		ByteBuffer slice = bytes.slice();
+		for (int i = 0; i < slice.limit(); i++) {
+			if (slice.get(i) < 0)
+				return Charset.defaultCharset().decode(slice);
+		}
+		return new ByteSource(slice);
+	}
+
+	/**
+	 * Maps the file given into memory as a source.
+	 * @param file the file to read
+	 * @return the source of the file
+	 * @throws IOException if the file could not be opened or is too large to map
+	 */
+	public static CharSequence map(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("File \"" + file + "\" is too large to compile!");
+			return of(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+		}
+	}
+
+	/**
+	 * Reads the stream given until its end into one direct buffer, which is only replaced
+	 * (by one twice the size) when it fills.
+	 * @param in the stream to read
+	 * @return the source read from the stream
+	 * @throws IOException if the stream could not be read
+	 */
+	public static CharSequence read(InputStream in) throws IOException {
+		ReadableByteChannel channel = Channels.newChannel(in);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+		while (channel.read(buffer) != -1) {
+			if (!buffer.hasRemaining()) {
+				ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+		}
+		buffer.flip();
+		return of(buffer);
+	}
+
+	@Override
+	public int length() {
+		return bytes.limit();
+	}
+
+	@Override
+	public char charAt(int index) {
+		return (char)(bytes.get(index) & 0xFF);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		byte[] sub = new byte[end - start];
+		// The buffer is read through a copy of its position, which leaves its own untouched
+		ByteBuffer dup = bytes.duplicate();
+		dup.position(start);
+		dup.get(sub);
+		// The bytes are all ASCII, which Latin-1 decodes one to one
+		return new String(sub, StandardCharsets.ISO_8859_1);
+	}
+
+	@Override
+	public String toString() {
+		return subSequence(0, length()).toString();
+	}
+
+}
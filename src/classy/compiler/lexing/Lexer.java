@@ -3,6 +3,11 @@ package classy.compiler.lexing;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Lexes by feeding each line through a chain of {@link Processor}s, where the first processor
+ * to accept a character takes the token. This has been replaced by {@link TableLexer}, but it
+ * is kept as the reference that the table lexer is tested against.
+ */
 public class Lexer {
 	protected List<Token> tokens = new ArrayList<>();
 	
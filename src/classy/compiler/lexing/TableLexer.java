@@ -0,0 +1,520 @@
+package classy.compiler.lexing;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A single-pass lexer driven by a precomputed character class and state transition table.
+ * <p>
+ * When trivia is kept, produces exactly the same token stream as the processor chain in
+ * {@link Lexer}, but walks the source once without cutting it into substrings. Each token is
+ * recognized by running the table from {@link #START} until no transition is possible, then
+ * taking the longest accepted prefix (which is how the processor order and backtracking of the
+ * chain is reproduced). Otherwise, the tokens are cleaned for the parser as they are found.
+ * <p>
+ * Nested multi-line comments cannot be expressed by a finite table, so the nesting depth is
+ * kept in a counter which is updated by the {@link #OPEN} and {@link #CLOSE} actions.
+ */
+public class TableLexer {
+	protected TokenStream tokens;
+	/** The classes of ASCII characters, which depend on which line terminators are recognized. */
+	protected byte[] asciiClass = ASCII_CLASS;
+	/** Whether all of the line terminators recognized by {@link java.util.Scanner} are used. */
+	protected boolean allBreaks = false;
+	/** Whether white space and comments are kept, and new lines are left as they are. */
+	protected boolean keepTrivia = false;
+	/** Whether the last token kept was a new line (or there was none yet). */
+	protected boolean lastNewLine = true;
+
+	// Character classes
+	protected static final int C_OTHER = 0, C_WS = 1, C_NL = 2, C_BSLASH = 3, C_HASH = 4, C_BAR = 5,
+			C_DIGIT = 6, C_ALPHA = 7, C_MINUS = 8, C_DOT = 9, C_EQ = 10, C_LT = 11, C_GT = 12,
+			C_COMMA = 13, C_SEMI = 14, C_LPAREN = 15, C_RPAREN = 16, C_LBRACE = 17, C_RBRACE = 18,
+			C_COLON = 19, C_PLUS = 20, C_STAR = 21, C_SLASH = 22, C_BANG = 23, C_PERCENT = 24,
+			C_AMP = 25;
+	protected static final int CLASSES = 26;
+
+	// States
+	protected static final int START = 0,
+			// white space, and an escaping backslash which must be followed by a new line
+			WS = 1, BS = 2,
+			// comments. TAIL is what remains of the line after a multi-line comment is closed.
+			HASH = 3, LINE = 4, BLOCK = 5, BLOCK_HASH = 6, BLOCK_BAR = 7, TAIL = 8, TAIL_HASH = 9,
+			TAIL_BAR = 10,
+			// numbers (which may be either a minus or a period if no digit follows)
+			MINUS = 11, DOT = 12, DOT_NUM = 13, INT = 14, INT_DOT = 15, FRAC = 16,
+			IDENT = 17,
+			// everything else
+			ASSIGN = 18, EQUAL = 19, LESS = 20, LESS_EQUAL = 21, NEQUAL = 22, GREATER = 23,
+			GREATER_EQUAL = 24,
+			// single character tokens, one state for each class from C_COMMA to C_AMP
+			SINGLE = 25, SINGLE_BAR = SINGLE + C_AMP - C_COMMA + 1;
+	protected static final int STATES = SINGLE_BAR + 1;
+
+	// Actions, which are the negative entries of the transition table
+	/** No transition: the token ends at the last accepting state. */
+	protected static final byte ERR = -1;
+	/** No transition, and the last character accepted must be given back. */
+	protected static final byte RETRACT = -2;
+	/** Opens a nested multi-line comment. */
+	protected static final byte OPEN = -3;
+	/** Closes a nested multi-line comment. */
+	protected static final byte CLOSE = -4;
+	/** Closes a multi-line comment that is not open. */
+	protected static final byte EXCESS = -5;
+
+	protected static final byte[] ASCII_CLASS = new byte[128];
+	/** {@link #ASCII_CLASS} where a carriage return also ends the line. */
+	protected static final byte[] BREAK_CLASS;
+	protected static final byte[] NEXT = new byte[STATES * CLASSES];
+	protected static final Token.Type[] ACCEPT = new Token.Type[STATES];
+
+	static {
+		for (char c = 0; c < 128; c++)
+			ASCII_CLASS[c] = (byte)unicodeClass(c);
+		ASCII_CLASS['\n'] = C_NL;
+		ASCII_CLASS['\\'] = C_BSLASH;
+		ASCII_CLASS['#'] = C_HASH;
+		ASCII_CLASS['|'] = C_BAR;
+		ASCII_CLASS['-'] = C_MINUS;
+		ASCII_CLASS['.'] = C_DOT;
+		ASCII_CLASS['='] = C_EQ;
+		ASCII_CLASS['<'] = C_LT;
+		ASCII_CLASS['>'] = C_GT;
+		// The single character tokens each get their own class and accepting state
+		char[] singles = {',', ';', '(', ')', '{', '}', ':', '+', '*', '/', '!', '%', '&'};
+		Token.Type[] singleTypes = {Token.Type.COMMA, Token.Type.SEMICOLON, Token.Type.OPEN_PAREN,
+				Token.Type.CLOSE_PAREN, Token.Type.OPEN_BRACE, Token.Type.CLOSE_BRACE, Token.Type.COLON,
+				Token.Type.PLUS, Token.Type.STAR, Token.Type.SLASH, Token.Type.BANG, Token.Type.PERCENT,
+				Token.Type.AMPERSAND};
+
+		Arrays.fill(NEXT, ERR);
+		for (int i = 0; i < singles.length; i++) {
+			ASCII_CLASS[singles[i]] = (byte)(C_COMMA + i);
+			on(START, C_COMMA + i, SINGLE + i);
+			ACCEPT[SINGLE + i] = singleTypes[i];
+		}
+
+		// White space may continue over a new line if it is escaped
+		on(START, C_WS, WS);
+		on(START, C_BSLASH, BS);
+		on(WS, C_WS, WS);
+		on(WS, C_BSLASH, BS);
+		on(BS, C_NL, WS);
+		ACCEPT[WS] = Token.Type.SPACE;
+
+		// Comments. A single-line comment stops before the new line. A multi-line comment
+		//  consumes all new lines until it is closed, then it goes to the end of that line.
+		on(START, C_HASH, HASH);
+		otherwise(HASH, LINE);
+		on(HASH, C_BAR, OPEN);
+		on(HASH, C_NL, ERR);
+		otherwise(LINE, LINE);
+		on(LINE, C_NL, ERR);
+		otherwise(BLOCK, BLOCK);
+		on(BLOCK, C_HASH, BLOCK_HASH);
+		on(BLOCK, C_BAR, BLOCK_BAR);
+		otherwise(BLOCK_HASH, BLOCK);
+		on(BLOCK_HASH, C_HASH, BLOCK_HASH);
+		on(BLOCK_HASH, C_BAR, OPEN);
+		otherwise(BLOCK_BAR, BLOCK);
+		on(BLOCK_BAR, C_BAR, BLOCK_BAR);
+		on(BLOCK_BAR, C_HASH, CLOSE);
+		otherwise(TAIL, TAIL);
+		on(TAIL, C_HASH, TAIL_HASH);
+		on(TAIL, C_BAR, TAIL_BAR);
+		on(TAIL, C_NL, ERR);
+		otherwise(TAIL_HASH, TAIL);
+		on(TAIL_HASH, C_HASH, TAIL_HASH);
+		on(TAIL_HASH, C_BAR, OPEN);
+		on(TAIL_HASH, C_NL, ERR);
+		otherwise(TAIL_BAR, TAIL);
+		on(TAIL_BAR, C_BAR, TAIL_BAR);
+		on(TAIL_BAR, C_HASH, EXCESS);
+		on(TAIL_BAR, C_NL, ERR);
+		for (int state: new int[] {HASH, LINE, TAIL, TAIL_HASH, TAIL_BAR})
+			ACCEPT[state] = Token.Type.COMMENT;
+
+		// Numbers, with at most one decimal point. A trailing point is only included if it
+		//  is not followed by another point.
+		on(START, C_MINUS, MINUS);
+		on(START, C_DOT, DOT);
+		on(START, C_DIGIT, INT);
+		on(MINUS, C_DIGIT, INT);
+		on(MINUS, C_DOT, DOT_NUM);
+		on(DOT, C_DIGIT, FRAC);
+		on(DOT_NUM, C_DIGIT, FRAC);
+		on(INT, C_DIGIT, INT);
+		on(INT, C_DOT, INT_DOT);
+		on(INT_DOT, C_DIGIT, FRAC);
+		on(INT_DOT, C_DOT, RETRACT);
+		on(FRAC, C_DIGIT, FRAC);
+		ACCEPT[MINUS] = Token.Type.MINUS;
+		ACCEPT[DOT] = Token.Type.PERIOD;
+		ACCEPT[INT] = Token.Type.NUMBER;
+		ACCEPT[INT_DOT] = Token.Type.NUMBER;
+		ACCEPT[FRAC] = Token.Type.NUMBER;
+
+		// Identifiers (keywords are sorted out after the identifier is accepted)
+		on(START, C_ALPHA, IDENT);
+		on(IDENT, C_ALPHA, IDENT);
+		on(IDENT, C_DIGIT, IDENT);
+		ACCEPT[IDENT] = Token.Type.IDENTIFIER;
+
+		// Operators which may be one or two characters long
+		on(START, C_EQ, ASSIGN);
+		on(ASSIGN, C_EQ, EQUAL);
+		on(START, C_LT, LESS);
+		on(LESS, C_EQ, LESS_EQUAL);
+		on(LESS, C_GT, NEQUAL);
+		on(START, C_GT, GREATER);
+		on(GREATER, C_EQ, GREATER_EQUAL);
+		on(START, C_BAR, SINGLE_BAR);
+		ACCEPT[ASSIGN] = Token.Type.ASSIGN;
+		ACCEPT[EQUAL] = Token.Type.EQUAL;
+		ACCEPT[LESS] = Token.Type.LESS_THAN;
+		ACCEPT[LESS_EQUAL] = Token.Type.LESS_EQUAL;
+		ACCEPT[NEQUAL] = Token.Type.NEQUAL;
+		ACCEPT[GREATER] = Token.Type.GREATER_THAN;
+		ACCEPT[GREATER_EQUAL] = Token.Type.GREATER_EQUAL;
+		ACCEPT[SINGLE_BAR] = Token.Type.BAR;
+
+		BREAK_CLASS = ASCII_CLASS.clone();
+		BREAK_CLASS['\r'] = C_NL;
+	}
+
+	private static void on(int state, int cls, int next) {
+		NEXT[state * CLASSES + cls] = (byte)next;
+	}
+	private static void otherwise(int state, int next) {
+		for (int cls = 0; cls < CLASSES; cls++)
+			on(state, cls, next);
+	}
+
+	/**
+	 * Finds the class of a character which is not covered by {@link #ASCII_CLASS}. Uses the
+	 * same tests as the processors so that non-ASCII letters, digits and spaces are handled
+	 * identically.
+	 */
+	protected static int unicodeClass(char c) {
+		if (c != '\n' && Character.isWhitespace(c))
+			return C_WS;
+		if (Character.isDigit(c))
+			return C_DIGIT;
+		if (Character.isAlphabetic(c) || c == '_')
+			return C_ALPHA;
+		return C_OTHER;
+	}
+
+	/**
+	 * Finds the class of any character in the source.
+	 */
+	protected int classOf(char c) {
+		if (c < 128)
+			return asciiClass[c];
+		if (allBreaks && (c == '\u0085' || c == '\u2028' || c == '\u2029'))
+			return C_NL;
+		return unicodeClass(c);
+	}
+
+	protected boolean isBreak(char c) {
+		return classOf(c) == C_NL;
+	}
+
+	/**
+	 * Finds where the line terminator beginning at the given index ends. Only a carriage
+	 * return followed by a line feed is longer than one character.
+	 */
+	protected static int endOfBreak(CharSequence source, int at) {
+		if (source.charAt(at) == '\r' && at + 1 < source.length() && source.charAt(at + 1) == '\n')
+			return at + 2;
+		return at + 1;
+	}
+
+	/**
+	 * Replaces each line terminator in the value of a token which continued over lines with
+	 * '\n', which is how the lines would have been joined if given separately.
+	 */
+	protected String joinLines(String value) {
+		if (!allBreaks)
+			return value;
+		StringBuilder joined = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (isBreak(c)) {
+				i = endOfBreak(value, i) - 1;
+				c = '\n';
+			}
+			joined.append(c);
+		}
+		return joined.toString();
+	}
+
+	public TableLexer(List<String> lines) {
+		this(lines, false);
+	}
+
+	/**
+	 * Lexes the lines given.
+	 * @param lines the lines of the source, without their terminators
+	 * @param keepTrivia whether to keep the white space, comment and new line tokens (see
+	 * {@link #clean(Token.Type)})
+	 */
+	public TableLexer(List<String> lines, boolean keepTrivia) {
+		this.keepTrivia = keepTrivia;
+		StringBuilder source = new StringBuilder();
+		for (String line: lines) {
+			source.append(line);
+			source.append('\n');
+		}
+		lex(source);
+	}
+
+	public TableLexer(CharSequence source) {
+		this(source, false);
+	}
+
+	/**
+	 * Lexes the source given. Lines may be separated by any of the terminators that
+	 * {@link java.util.Scanner} recognizes ("\n", "\r\n", "\r", "\u0085", "\u2028" and
+	 * "\u2029"), and the last line does not need to be terminated.
+	 * @param source the complete source text
+	 * @param keepTrivia whether to keep the white space, comment and new line tokens (see
+	 * {@link #clean(Token.Type)})
+	 */
+	public TableLexer(CharSequence source, boolean keepTrivia) {
+		this.keepTrivia = keepTrivia;
+		asciiClass = BREAK_CLASS;
+		allBreaks = true;
+		lex(source);
+	}
+
+	/**
+	 * Filters each token as it is lexed, unless trivia is kept. White space and comments are
+	 * dropped, and new lines become semicolons, except for any which directly follow another
+	 * new line (or begin the source), which are dropped too.
+	 * @param type the type of the token lexed
+	 * @return the type the token should be added with, or null if it should be dropped
+	 */
+	protected Token.Type clean(Token.Type type) {
+		if (keepTrivia)
+			return type;
+		switch (type) {
+		case SPACE:
+		case COMMENT:
+			return null;
+		case NEW_LINE:
+			if (lastNewLine)
+				return null;
+			lastNewLine = true;
+			return Token.Type.SEMICOLON;
+		default:
+			lastNewLine = false;
+			return type;
+		}
+	}
+
+	protected void newLine(int lineNo, int colNo) {
+		Token.Type type = clean(Token.Type.NEW_LINE);
+		if (type != null)
+			tokens.add(type, TokenStream.LINE_BREAK, lineNo, colNo);
+	}
+
+	protected void lex(CharSequence source) {
+		final int length = source.length();
+		tokens = new TokenStream(source, length / 8);
+		int lineNo = 1;
+		int lineStart = 0;
+		int pos = 0;
+		// We keep track of the parentheses level. If level > 0, then new lines are not tokens
+		//  (since they are mid-expression).
+		int level = 0;
+
+		// White space and multi-line comments may continue over the end of the line. If they
+		//  do, their state is carried to the next line.
+		int carried = ERR;
+		int tokenStart = 0;
+		int nest = 0;
+		// Empty lines are not part of a carried token, so if the token is interrupted, we need
+		//  to save what was found before the interruption.
+		StringBuilder carriedText = null;
+
+		while (pos < length) {
+			int state;
+			int start;
+			boolean continued = carried != ERR;
+			if (continued) {
+				if (isBreak(source.charAt(pos))) {
+					if (carriedText == null)
+						carriedText = new StringBuilder();
+					carriedText.append(source, tokenStart, pos);
+					if (level == 0)
+						newLine(lineNo, 0);
+					lineStart = pos = tokenStart = endOfBreak(source, pos);
+					lineNo++;
+					continue;
+				}
+				state = carried;
+				start = tokenStart;
+				carried = ERR;
+			}else {
+				if (isBreak(source.charAt(pos))) {
+					if (level == 0)
+						newLine(lineNo, pos - lineStart);
+					lineStart = pos = endOfBreak(source, pos);
+					lineNo++;
+					continue;
+				}
+				state = START;
+				start = pos;
+				nest = 0;
+			}
+
+			// Run the table until there is no transition
+			int accepted = ACCEPT[state] != null? pos : -1;
+			Token.Type type = ACCEPT[state];
+			int at = pos;
+			boolean endOfLine = false;
+			final byte[] classes = asciiClass;
+			while (true) {
+				int cls;
+				if (at < length) {
+					char c = source.charAt(at);
+					cls = c < 128? classes[c] : classOf(c);
+				}else
+					cls = C_NL; // the last line may be unterminated
+				int next = NEXT[state * CLASSES + cls];
+				if (next < 0) {
+					if (next == ERR)
+						break;
+					else if (next == RETRACT) {
+						accepted = at - 1;
+						break;
+					}else if (next == OPEN) {
+						nest++;
+						next = BLOCK;
+					}else if (next == CLOSE) {
+						nest--;
+						next = (nest == 0)? TAIL : BLOCK;
+					}else {
+						String found = (carriedText == null? "" : carriedText.toString()) +
+								source.subSequence(start, at);
+						if (continued)
+							found = joinLines(found);
+						LexException le = new LexException("Excess nested string terminations in comment, \"",
+								found, "\"!");
+						if (continued)
+							throw le;
+						throw new LexException(le, "Lexing error on line " + Integer.toString(lineNo) +
+								" and column " + Integer.toString(start - lineStart) + "!");
+					}
+				}
+				// The virtual new line at the end of the source is one past the end
+				at = (cls == C_NL && at < length)? endOfBreak(source, at) : at + 1;
+				state = next;
+				if (ACCEPT[state] != null) {
+					accepted = at;
+					type = ACCEPT[state];
+				}
+				if (cls == C_NL) {
+					endOfLine = true;
+					break;
+				}
+			}
+
+			if (endOfLine) {
+				// The token ate the new line, so it is continued on the next line
+				carried = state;
+				tokenStart = start;
+				lineStart = pos = at;
+				lineNo++;
+				continue;
+			}
+			if (accepted == -1) {
+				// Nothing could be made from what is next in the line
+				int lineEnd = pos;
+				while (lineEnd < length && !isBreak(source.charAt(lineEnd)))
+					lineEnd++;
+				throw new LexException("Unexpected token \"", source.subSequence(pos, lineEnd),
+						"\" on line ", Integer.toString(lineNo), " and column ",
+						Integer.toString(pos - lineStart), "!");
+			}
+
+			if (type == Token.Type.IDENTIFIER)
+				type = keyword(source, start, accepted);
+			Token.Type kept = clean(type);
+			// Only a token which continued over lines may have a value which is not exactly
+			//  what is in the source
+			if (kept == null)
+				carriedText = null;
+			else if (carriedText != null) {
+				String value = carriedText.append(source, start, accepted).toString();
+				tokens.add(kept, joinLines(value), lineNo, accepted - lineStart);
+				carriedText = null;
+			}else if (continued && allBreaks) {
+				String value = source.subSequence(start, accepted).toString();
+				tokens.add(kept, joinLines(value), lineNo, accepted - lineStart);
+			}else
+				tokens.add(kept, start, accepted, lineNo, accepted - lineStart);
+			if (type == Token.Type.OPEN_PAREN)
+				level++;
+			else if (type == Token.Type.CLOSE_PAREN) {
+				level--;
+				if (level < 0)
+					throw new LexException("Mismatch parentheses error! Cannot see ",
+							tokens.get(tokens.size() - 1), " before matching opening.");
+			}
+			pos = accepted;
+		}
+
+		if (carried != ERR) {
+			// If a token is still carried, then it is expecting more characters. This is
+			//  problematic, since the character stream has ended.
+			throw new LexException("Unexpected end found while processing ",
+					(carried == WS? "white space" : "comment"), "!");
+		}
+		// An unterminated last line ends as if it were terminated
+		if (length > 0 && !isBreak(source.charAt(length - 1)) && level == 0)
+			newLine(lineNo, length - lineStart);
+		tokens.buildIndex();
+	}
+
+	protected static final String[] KEYWORDS = {"let", "if", "else", "lambda", "void", "self",
+			"true", "false", "type", "isa"};
+	protected static final Token.Type[] KEYWORD_TYPES = {Token.Type.LET, Token.Type.IF,
+			Token.Type.ELSE, Token.Type.LAMBDA, Token.Type.VOID, Token.Type.SELF, Token.Type.TRUE,
+			Token.Type.FALSE, Token.Type.TYPE, Token.Type.ISA};
+
+	/**
+	 * Finds the type of the identifier in the source between the offsets given, which is
+	 * compared in place so that no string needs to be made.
+	 */
+	protected static Token.Type keyword(CharSequence source, int start, int end) {
+		int length = end - start;
+		outer:
+		for (int i = 0; i < KEYWORDS.length; i++) {
+			String keyword = KEYWORDS[i];
+			if (keyword.length() != length)
+				continue;
+			for (int j = 0; j < length; j++) {
+				if (keyword.charAt(j) != source.charAt(start + j))
+					continue outer;
+			}
+			return KEYWORD_TYPES[i];
+		}
+		return Token.Type.IDENTIFIER;
+	}
+
+	/**
+	 * Gets the tokens lexed, each of which is made when it is accessed.
+	 * @return a list view of {@link #getTokenStream()}
+	 */
+	public List<Token> getTokens() {
+		return tokens.asList();
+	}
+
+	public TokenStream getTokenStream() {
+		return tokens;
+	}
+
+}
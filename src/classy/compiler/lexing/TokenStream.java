@@ -0,0 +1,289 @@
+package classy.compiler.lexing;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact list of tokens, stored as parallel arrays of primitives rather than as one object
+ * per token. The value of most tokens is not stored at all: it is found (only when asked for)
+ * from where the token lies in the source.
+ * <p>
+ * Values which are not a plain slice of the source (such as that of a new line, or of a
+ * token continued over several lines) are kept separately. A {@link Token} can be made for
+ * any index with {@link #get(int)}, which is how tokens are given in error messages.
+ * <p>
+ * Once all tokens are added, the stream may be indexed by {@link #buildIndex()}, after which
+ * the close of any scope and the next {@link #SEPARATORS separator} in it are found without
+ * scanning. Any open paren or brace is closed by the next close paren or brace at its depth,
+ * whichever kind it is.
+ */
+public class TokenStream {
+	protected static final Token.Type[] TYPES = Token.Type.values();
+	/** The value given to all new line tokens. */
+	public static final String LINE_BREAK = "\\n";
+
+	protected CharSequence source;
+	protected int size = 0;
+	protected byte[] types;
+	/** The offset of each token in the source, or the index of its value in {@link #values} */
+	protected int[] starts;
+	/** The length of each token in the source, or -1 if its value is in {@link #values} */
+	protected int[] lengths;
+	protected int[] lineNos;
+	protected int[] colNos;
+	protected List<String> values = new ArrayList<>();
+
+	/** The types of token which are indexed in {@link #nextSeparator}. */
+	protected static final Token.Type[] SEPARATORS = {Token.Type.COMMA, Token.Type.SEMICOLON,
+			Token.Type.ASSIGN};
+	/** Whether the index is up to date with the tokens */
+	protected boolean indexed = false;
+	/**
+	 * For each token, the index of the close which ends the scope the token is in, or -1 if the
+	 * scope is never closed. A close token ends its own scope, and the close which matches an
+	 * open token is the one which ends the scope of the token after it.
+	 */
+	protected int[] closes;
+	/**
+	 * For each separator type (in the order of {@link #SEPARATORS}) and each token, the index
+	 * of the first separator at or after the token before its scope ends, or -1 if none.
+	 */
+	protected int[][] nextSeparator;
+
+	public TokenStream(CharSequence source) {
+		this(source, 16);
+	}
+
+	public TokenStream(CharSequence source, int capacity) {
+		this.source = source;
+		capacity = Math.max(capacity, 1);
+		types = new byte[capacity];
+		starts = new int[capacity];
+		lengths = new int[capacity];
+		lineNos = new int[capacity];
+		colNos = new int[capacity];
+	}
+
+	/**
+	 * Copies the tokens given into a new stream. Since there is no source, all the values are
+	 * stored separately.
+	 * @param tokens the tokens to copy
+	 * @return the stream of tokens
+	 */
+	public static TokenStream of(List<Token> tokens) {
+		TokenStream stream = new TokenStream("", tokens.size());
+		for (Token token: tokens)
+			stream.add(token.getType(), token.getValue(), token.getLineNo(), token.getColNo());
+		return stream;
+	}
+
+	/**
+	 * Adds a token whose value is found in the source.
+	 * @param type the type of the token
+	 * @param start the offset in the source where the token begins
+	 * @param end the offset in the source where the token ends (exclusive)
+	 * @param lineNo the line number of the token
+	 * @param colNo the column number of the token
+	 */
+	public void add(Token.Type type, int start, int end, int lineNo, int colNo) {
+		indexed = false;
+		if (size == types.length)
+			grow();
+		types[size] = (byte)type.ordinal();
+		starts[size] = start;
+		lengths[size] = end - start;
+		lineNos[size] = lineNo;
+		colNos[size] = colNo;
+		size++;
+	}
+
+	/**
+	 * Adds a token whose value is given.
+	 * @param type the type of the token
+	 * @param value the value of the token
+	 * @param lineNo the line number of the token
+	 * @param colNo the column number of the token
+	 */
+	public void add(Token.Type type, String value, int lineNo, int colNo) {
+		indexed = false;
+		if (size == types.length)
+			grow();
+		types[size] = (byte)type.ordinal();
+		starts[size] = values.size();
+		values.add(value);
+		lengths[size] = -1;
+		lineNos[size] = lineNo;
+		colNos[size] = colNo;
+		size++;
+	}
+
+	protected void grow() {
+		int capacity = types.length * 2;
+		types = Arrays.copyOf(types, capacity);
+		starts = Arrays.copyOf(starts, capacity);
+		lengths = Arrays.copyOf(lengths, capacity);
+		lineNos = Arrays.copyOf(lineNos, capacity);
+		colNos = Arrays.copyOf(colNos, capacity);
+	}
+
+	/**
+	 * Builds the scope index over all the tokens in one pass from the last to the first.
+	 */
+	public void buildIndex() {
+		closes = new int[size];
+		nextSeparator = new int[SEPARATORS.length][size];
+		byte[] separators = new byte[SEPARATORS.length];
+		for (int k = 0; k < SEPARATORS.length; k++)
+			separators[k] = (byte)SEPARATORS[k].ordinal();
+
+		for (int i = size - 1; i >= 0; i--) {
+			Token.Type type = getType(i);
+			if (isClose(type)) {
+				closes[i] = i;
+				for (int k = 0; k < separators.length; k++)
+					nextSeparator[k][i] = -1;
+				continue;
+			}
+			// The next token in the same scope is either the next token, or the token after
+			//  the close matching this open. An open which is never matched has no scope left
+			//  after it.
+			int next = i + 1;
+			if (isOpen(type))
+				next = (next < size && closes[next] != -1)? closes[next] + 1 : size;
+			boolean last = next >= size;
+			closes[i] = last? -1 : closes[next];
+			for (int k = 0; k < separators.length; k++) {
+				if (types[i] == separators[k])
+					nextSeparator[k][i] = i;
+				else
+					nextSeparator[k][i] = last? -1 : nextSeparator[k][next];
+			}
+		}
+		indexed = true;
+	}
+
+	protected static boolean isOpen(Token.Type type) {
+		return type == Token.Type.OPEN_BRACE || type == Token.Type.OPEN_PAREN;
+	}
+
+	protected static boolean isClose(Token.Type type) {
+		return type == Token.Type.CLOSE_BRACE || type == Token.Type.CLOSE_PAREN;
+	}
+
+	/**
+	 * Finds the close which ends the scope that the token at the index given is in.
+	 * @param index the index of the token to begin from
+	 * @return the index of the close, or -1 if the scope is not closed
+	 */
+	public int findClose(int index) {
+		if (index >= size)
+			return -1;
+		if (!indexed)
+			buildIndex();
+		return closes[index];
+	}
+
+	/**
+	 * Finds the close which matches the open token at the index given.
+	 * @param open the index of an open paren or brace
+	 * @return the index of the matching close, or -1 if it is never closed
+	 */
+	public int findMatch(int open) {
+		return findClose(open + 1);
+	}
+
+	/**
+	 * Finds the first token of the type given at or after the index given which is in the same
+	 * scope. Tokens in nested scopes are skipped, and the search stops at the end of the scope
+	 * (which is found only if it is the type looked for). Separators and closes are found
+	 * without scanning, but any other type is searched for over the tokens in the scope.
+	 * @param type the type to look for
+	 * @param index the index of the token to begin from
+	 * @return the index of the first token found, or -1 if there is none in the scope
+	 */
+	public int findNext(Token.Type type, int index) {
+		if (index >= size)
+			return -1;
+		if (!indexed)
+			buildIndex();
+		for (int k = 0; k < SEPARATORS.length; k++) {
+			if (SEPARATORS[k] == type)
+				return nextSeparator[k][index];
+		}
+		if (isClose(type)) {
+			int close = closes[index];
+			return (close != -1 && getType(close) == type)? close : -1;
+		}
+		for (int i = index; i < size;) {
+			Token.Type at = getType(i);
+			if (at == type)
+				return i;
+			if (isClose(at))
+				return -1;
+			if (isOpen(at)) {
+				int match = findMatch(i);
+				if (match == -1)
+					return -1;
+				i = match + 1;
+			}else
+				i++;
+		}
+		return -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Token.Type getType(int index) {
+		return TYPES[types[index]];
+	}
+
+	public String getValue(int index) {
+		int length = lengths[index];
+		if (length < 0)
+			return values.get(starts[index]);
+		int start = starts[index];
+		return source.subSequence(start, start + length).toString();
+	}
+
+	public int getLineNo(int index) {
+		return lineNos[index];
+	}
+
+	public int getColNo(int index) {
+		return colNos[index];
+	}
+
+	/**
+	 * Makes a {@link Token} with all the data of the token at the index given.
+	 * @param index the index of the token
+	 * @return a new token object
+	 */
+	public Token get(int index) {
+		if (index >= size)
+			throw new IndexOutOfBoundsException(index);
+		return new Token(getValue(index), getType(index), lineNos[index], colNos[index]);
+	}
+
+	/**
+	 * Views the stream as a list of tokens. Each token is made when it is accessed.
+	 * @return the unmodifiable list view
+	 */
+	public List<Token> asList() {
+		return new AbstractList<Token>() {
+			@Override
+			public Token get(int index) {
+				return TokenStream.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+}
@@ -30,7 +30,7 @@ public class Assignment extends NameBinding {
 		if (!it.match(Token.Type.IDENTIFIER, end))
 			throw new ParseException("Definition must have identifier following \"let\" keyword! ",
 					it.token(), " found instead.");
-		varName = it.token().getValue();
+		varName = it.value();
 		it.next(end);
 		
 		// We can see a more complex path to make this a method.
@@ -46,7 +46,7 @@ public class Assignment extends NameBinding {
 			if (!it.match(Token.Type.IDENTIFIER, end))
 				throw new ParseException("Incomplete path for method definition! Function name expected after period, but ",
 						it.token(), " found instead.");
-			varName = it.token().getValue();
+			varName = it.value();
 			it.next(end);
 		}
 		
@@ -62,7 +62,7 @@ public class Assignment extends NameBinding {
 		if (it.match(Token.Type.COLON, end)) { // type annotation for the variable
 			it.next(end);
 			if (it.match(Token.Type.IDENTIFIER, end))
-				annotation = new Type.Stub(it.token().getValue());
+				annotation = new Type.Stub(it.value());
 			else
 				throw new ParseException("Type name must be given after ':' in variable declaration beginning with ",
 						it.tokens.get(assignmentStart), "!");
@@ -107,6 +107,22 @@ public class Assignment extends NameBinding {
 		return path;
 	}
 	
+	/**
+	 * Copies this assignment into the block given. The copy shares the parameters of this, and
+	 * is sourced by the same variable until it is given one of its own.
+	 */
+	public Assignment clone(Block parent) {
+		Assignment cloned = new Assignment(parent);
+		cloned.startToken = startToken;
+		cloned.varName = varName;
+		cloned.path = path;
+		cloned.paramList = paramList;
+		cloned.annotation = annotation;
+		cloned.sourced = sourced;
+		cloned.value = value.clone();
+		return cloned;
+	}
+	
 	@Override
 	public String pretty(int indents) {
 		StringBuffer buf = new StringBuffer("let ");
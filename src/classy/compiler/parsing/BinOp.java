@@ -263,16 +263,54 @@ public abstract class BinOp extends Operation {
 	}
 
 	public BinOp clone() {
-		BinOp outer = this;
-		BinOp cloned = new BinOp(parent, this.operation) {
-			@Override
-			protected String prettyOperation() {
-				return outer.prettyOperation();
-			}
-		};
-		cloned.lhs = this.lhs.clone();
-		cloned.rhs = this.rhs.clone();
-		
+		// The clone must be of the same kind, since that is how its operation is known later
+		BinOp cloned;
+		switch (operation) {
+		case PLUS:
+			cloned = new Addition(parent); break;
+		case MINUS:
+			cloned = new Subtraction(parent); break;
+		case STAR:
+			cloned = new Multiplication(parent); break;
+		case SLASH:
+			cloned = new Division(parent); break;
+		case PERCENT:
+			cloned = new Modulus(parent); break;
+		case EQUAL:
+			cloned = new Equal(parent); break;
+		case NEQUAL:
+			cloned = new NEqual(parent); break;
+		case LESS_THAN:
+			cloned = new LessThan(parent); break;
+		case LESS_EQUAL:
+			cloned = new LessEqual(parent); break;
+		case GREATER_THAN:
+			cloned = new GreaterThan(parent); break;
+		case GREATER_EQUAL:
+			cloned = new GreaterEqual(parent); break;
+		case AMPERSAND:
+			cloned = new And(parent); break;
+		case BAR:
+			cloned = new Or(parent); break;
+		default:
+			throw new ParseException("Binary operation ", this, " cannot be cloned!");
+		}
+		cloned.startToken = startToken;
+		if (lhs != null)
+			cloned.lhs = lhs.clone();
+		if (rhs != null)
+			cloned.rhs = rhs.clone();
 		return cloned;
 	}
+	
+	@Override
+	public int structuralHash() {
+		return 31 * super.structuralHash() + structuralHash(lhs);
+	}
+	
+	@Override
+	public boolean structurallyEquals(Subexpression other) {
+		return super.structurallyEquals(other) && structurallyEqual(((BinOp)other).lhs, lhs);
+	}
+
 }
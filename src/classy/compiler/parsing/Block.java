@@ -135,14 +135,17 @@ public class Block extends Subexpression {
 		Block cloned = new Block();
 		cloned.parent = parent;
 		cloned.impliedBounds = impliedBounds;
+		cloned.startToken = startToken;
 		for (Expression e: body) {
 			if (e instanceof Subexpression) {
 				Subexpression sub = (Subexpression)e;
 				cloned.body.add(sub.clone());
-			}else
+			}else if (e instanceof Assignment)
+				cloned.body.add(((Assignment)e).clone(cloned));
+			else
 				cloned.body.add(e);
 		}
-		return null;
+		return cloned;
 	}
 
 }
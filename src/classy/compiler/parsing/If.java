@@ -88,10 +88,25 @@ public class If extends Subexpression {
 	
 	public If clone() {
 		If cloned = new If(parent);
+		cloned.startToken = startToken;
 		cloned.condition = condition.clone();
 		cloned.then = then.clone();
 		cloned.else_ = else_.clone();
 		return cloned;
 	}
+	
+	@Override
+	public int structuralHash() {
+		return 31 * (31 * structuralHash(condition) + structuralHash(then)) + structuralHash(else_);
+	}
+	
+	@Override
+	public boolean structurallyEquals(Subexpression other) {
+		if (!(other instanceof If))
+			return false;
+		If if_ = (If)other;
+		return structurallyEqual(if_.condition, condition) && structurallyEqual(if_.then, then) &&
+				structurallyEqual(if_.else_, else_);
+	}
 
 }
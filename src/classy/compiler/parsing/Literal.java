@@ -41,4 +41,19 @@ public class Literal extends Subexpression {
 		cloned.startToken = startToken;
 		return cloned;
 	}
+	
+	@Override
+	public int structuralHash() {
+		return startToken.getValue().hashCode();
+	}
+	
+	@Override
+	public boolean structurallyEquals(Subexpression other) {
+		if (!(other instanceof Literal))
+			return false;
+		Token otherToken = ((Literal)other).startToken;
+		return otherToken.getType() == startToken.getType() &&
+				otherToken.getValue().equals(startToken.getValue());
+	}
+
 }
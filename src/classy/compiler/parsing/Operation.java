@@ -96,16 +96,28 @@ public abstract class Operation extends Subexpression {
 	protected abstract String prettyOperation();
 	
 	public Operation clone() {
-		Operation outer = this;
-		Operation cloned = new Operation(parent, this.operation) {
-			@Override
-			protected String prettyOperation() {
-				return outer.prettyOperation();
-			}
-		};
-		cloned.rhs = this.rhs.clone();
-		
+		Operation cloned;
+		if (operation == Token.Type.BANG)
+			cloned = new Not(parent);
+		else
+			cloned = new Negation(parent);
+		cloned.startToken = startToken;
+		if (rhs != null)
+			cloned.rhs = rhs.clone();
 		return cloned;
 	}
+	
+	@Override
+	public int structuralHash() {
+		return 31 * operation.ordinal() + structuralHash(rhs);
+	}
+	
+	@Override
+	public boolean structurallyEquals(Subexpression other) {
+		if (other == null || other.getClass() != getClass())
+			return false;
+		Operation op = (Operation)other;
+		return op.operation == operation && structurallyEqual(op.rhs, rhs);
+	}
 
 }
@@ -24,22 +24,22 @@ public class Parameter extends NameBinding {
 			throw new ParseException("Identifier should be the first token in a parameter! However, ",
 					it.token(), " was found instead.");
 		startToken = it.token();
-		name = it.token().getValue();
+		name = it.value();
 		it.next(end);
 		try {
 			// We could see a type annotation or a default value
 			if (it.match(Token.Type.COLON, end)) {
 				it.next(end);
 				if (it.match(Token.Type.IDENTIFIER, end))
-					annotation = new Type.Stub(it.token().getValue());
+					annotation = new Type.Stub(it.value());
 				else
 					throw new ParseException("Type name must be given after ':' in parameter declaration beginning with ",
 							startToken, "!");
 				it.next(end);
 			} // We can still see a default value even if we saw an annotation
-			while(Token.isNonSyntaxType(it.token().getType()) && it.token().getType() != Token.Type.SEMICOLON)
+			while(Token.isNonSyntaxType(it.type()) && it.type() != Token.Type.SEMICOLON)
 				it.next(end);
-			if (it.token().getType() == Token.Type.ASSIGN) {
+			if (it.type() == Token.Type.ASSIGN) {
 				// We are going to set a default value for this parameter
 				it.next(end);
 				defaultVal = new Value();
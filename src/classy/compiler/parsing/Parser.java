@@ -4,15 +4,20 @@ import java.util.ArrayList;
 import java.util.List;
 
 import classy.compiler.lexing.Token;
+import classy.compiler.lexing.TokenStream;
 
 public class Parser {
 	protected Value program;
 	
-	public Parser(List<Token> tokens) {
+	public Parser(TokenStream tokens) {
 		parse(tokens);
 	}
 	
-	public void parse(List<Token> tokens) {
+	public Parser(List<Token> tokens) {
+		this(TokenStream.of(tokens));
+	}
+	
+	public void parse(TokenStream tokens) {
 		Block topLevel = new Block(null, true);
 		TokenIterator it = new TokenIterator(tokens, 0);
 		int end = tokens.size();
@@ -110,6 +110,7 @@ public class Reference extends Subexpression {
 	
 	public Reference clone() {
 		Reference cloned = new Reference(parent);
+		cloned.startToken = startToken;
 		cloned.varName = varName;
 		if (arguments != null)
 			cloned.arguments = arguments.clone();
@@ -119,7 +120,9 @@ public class Reference extends Subexpression {
 		if (memberData != null) {
 			cloned.memberData = new MemberData();
 			cloned.memberData.memberOf = memberData.memberOf;
-			cloned.memberData.location = memberData.location.clone();
+			cloned.memberData.receiver = memberData.receiver;
+			if (memberData.location != null)
+				cloned.memberData.location = memberData.location.clone();
 		}
 		cloned.type = type;
 		return cloned;
@@ -128,6 +131,8 @@ public class Reference extends Subexpression {
 	public static class MemberData {
 		public Value location;
 		public Type memberOf;
+		// The type the location is known to have, which may be a descendant of memberOf
+		public Type receiver;
 		
 		public MemberData() { }
 		public MemberData(Value location, Type memberOf) {
@@ -135,5 +140,30 @@ public class Reference extends Subexpression {
 			this.memberOf = memberOf;
 		}
 	}
+	
+	@Override
+	public int structuralHash() {
+		int hash = 31 * varName.hashCode() + structuralHash(arguments);
+		if (memberData != null)
+			hash = 31 * hash + 1 + structuralHash(memberData.location);
+		return hash;
+	}
+	
+	/**
+	 * Decides whether the other is a reference to the same variable (or the same member of
+	 * an equal location) with equal arguments, if any.
+	 */
+	@Override
+	public boolean structurallyEquals(Subexpression other) {
+		if (!(other instanceof Reference))
+			return false;
+		Reference ref = (Reference)other;
+		if (ref.linkedTo != linkedTo || !ref.varName.equals(varName) ||
+				!structurallyEqual(ref.arguments, arguments))
+			return false;
+		if (memberData == null || ref.memberData == null)
+			return memberData == ref.memberData;
+		return structurallyEqual(ref.memberData.location, memberData.location);
+	}
 
 }
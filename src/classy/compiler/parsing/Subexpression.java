@@ -44,4 +44,44 @@ public abstract class Subexpression extends Expression {
 	
 	public abstract Subexpression clone();
 	
+	/**
+	 * Hashes the structure of this subexpression, such that any two subexpressions which are
+	 * {@link #structurallyEquals(Subexpression) structurally equal} have the same hash.
+	 * <p>
+	 * By default, the hash is of the identity of this subexpression.
+	 * @return the hash
+	 */
+	public int structuralHash() {
+		return System.identityHashCode(this);
+	}
+	
+	/**
+	 * Decides whether the other subexpression has the same structure as this: the same
+	 * operations on the same literals and references to the same variables. Since evaluation
+	 * has no side effects, structurally equal subexpressions in the same scope evaluate to
+	 * the same result.
+	 * <p>
+	 * By default, a subexpression is only equal to itself.
+	 * @param other the subexpression to compare to
+	 * @return whether the two are structurally equal
+	 */
+	public boolean structurallyEquals(Subexpression other) {
+		return this == other;
+	}
+	
+	/**
+	 * Decides whether the two (possibly null) subexpressions are structurally equal.
+	 */
+	protected static boolean structurallyEqual(Subexpression one, Subexpression two) {
+		if (one == null || two == null)
+			return one == two;
+		return one.structurallyEquals(two);
+	}
+	/**
+	 * Hashes the structure of the (possibly null) subexpression.
+	 */
+	protected static int structuralHash(Subexpression sub) {
+		return (sub == null)? 0 : sub.structuralHash();
+	}
+	
 }
@@ -3,19 +3,26 @@ package classy.compiler.parsing;
 import java.util.List;
 
 import classy.compiler.lexing.Token;
+import classy.compiler.lexing.TokenStream;
 
 public class TokenIterator {
-	protected List<Token> tokens;
+	protected TokenStream tokens;
 	protected int index;
 	
-	public TokenIterator(List<Token> tokens) {
+	public TokenIterator(TokenStream tokens) {
 		this.tokens = tokens;
 		index = 0;
 	}
-	public TokenIterator(List<Token> tokens, int index) {
+	public TokenIterator(TokenStream tokens, int index) {
 		this.tokens = tokens;
 		this.index = index;
 	}
+	public TokenIterator(List<Token> tokens) {
+		this(TokenStream.of(tokens));
+	}
+	public TokenIterator(List<Token> tokens, int index) {
+		this(TokenStream.of(tokens), index);
+	}
 	
 	/**
 	 * Attempts to match the first token in "got" at "index" to the token type
@@ -30,7 +37,7 @@ public class TokenIterator {
 	 */
 	public boolean match(Token.Type expected, int end) {
 		while (index < end) {
-			Token.Type curr = token().getType();
+			Token.Type curr = tokens.getType(index);
 			
 			// If this type is what we were expecting, match on it
 			if (curr == expected)
@@ -55,39 +62,21 @@ public class TokenIterator {
 	
 	/**
 	 * Finds the first occurrence of the expected token type in the same scope.
-	 * Begins searching in "tokens" from index "start".
+	 * Begins searching in "tokens" from the current index.
 	 * 
 	 * @param expected the token type to be found. An expected semicolon is the
 	 * same as a call to {@link #findBreak(List, int)}.
 	 * @return the index if found, -1 if not.
 	 */
 	public int find(Token.Type expected, int end) {
-		int scope = 0;
-
-		for (int i= index; i < end; i++) {
-			Token token = tokens.get(i);
-			Token.Type type = token.getType();
-			
-			if (scope == 0 && type == expected)
-				return i;
-
-			else if (type == Token.Type.CLOSE_BRACE || type == Token.Type.CLOSE_PAREN) {
-				if (scope > 0)
-					scope--;
-				else {
-					// end of scope forces a break
-					if (expected == Token.Type.SEMICOLON)
-						return i;
-					return -1;
-				}
-			}
-
-			else if (type == Token.Type.OPEN_BRACE || type == Token.Type.OPEN_PAREN) 
-				scope++;
-		}
-
-		// if we exit out of the loop, the expected token was not found!
-		return -1;
+		if (index >= end)
+			return -1;
+		// The stream keeps an index of each scope, so nothing needs to be scanned
+		int found = tokens.findNext(expected, index);
+		// end of scope forces a break
+		if (found == -1 && expected == Token.Type.SEMICOLON)
+			found = tokens.findClose(index);
+		return (found < end)? found : -1;
 	}
 	
 	/**
@@ -128,10 +117,28 @@ public class TokenIterator {
 		this.index = index;
 	}
 	
+	/**
+	 * Makes a {@link Token} for the token at the current index, which should only be done
+	 * where the token object is kept or reported. Otherwise use {@link #type()} or
+	 * {@link #value()}.
+	 * @return the current token
+	 */
 	public Token token() {
 		return tokens.get(index);
 	}
 	
+	public Token.Type type() {
+		if (index >= tokens.size())
+			throw new IndexOutOfBoundsException(index);
+		return tokens.getType(index);
+	}
+	
+	public String value() {
+		if (index >= tokens.size())
+			throw new IndexOutOfBoundsException(index);
+		return tokens.getValue(index);
+	}
+	
 	public void next(int end) {
 		index++;
 		if (index > end) {
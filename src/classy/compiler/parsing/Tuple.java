@@ -101,7 +101,7 @@ public class Tuple extends Subexpression {
 			int startIndex = it.index;
 			try {
 				if (it.match(Token.Type.IDENTIFIER, end)) {
-					String maybeLabel = it.token().getValue();
+					String maybeLabel = it.value();
 					it.next(end);
 					if (it.match(Token.Type.ASSIGN, end)) {
 						// We found a label!
@@ -131,9 +131,29 @@ public class Tuple extends Subexpression {
 		public LabeledValue clone() {
 			Value cloned = super.clone();
 			LabeledValue ret = new LabeledValue(cloned, label);
+			ret.startToken = startToken;
+			// The subexpressions were cloned into the value, which the label replaces
+			for (Subexpression sub: ret.subexpressions)
+				sub.parent = ret;
 			return ret;
 		}
 		
+		@Override
+		public int structuralHash() {
+			return 31 * super.structuralHash() + ((label == null)? 0 : label.hashCode());
+		}
+		
+		/**
+		 * Decides whether the other value is equal and has the same label, if any.
+		 */
+		@Override
+		public boolean structurallyEquals(Subexpression other) {
+			if (!super.structurallyEquals(other))
+				return false;
+			String otherLabel = ((LabeledValue)other).label;
+			return (label == null)? otherLabel == null : label.equals(otherLabel);
+		}
+		
 		@Override
 		public String pretty(int indents) {
 			StringBuffer buf = new StringBuffer();
@@ -149,9 +169,29 @@ public class Tuple extends Subexpression {
 	@Override
 	public Tuple clone() {
 		Tuple cloned = new Tuple(parent);
+		cloned.startToken = startToken;
 		for (LabeledValue arg: args)
 			cloned.args.add(arg.clone());
-		return null;
+		return cloned;
+	}
+	
+	@Override
+	public int structuralHash() {
+		int hash = 1;
+		for (LabeledValue arg: args)
+			hash = 31 * hash + arg.structuralHash();
+		return hash;
+	}
+	
+	@Override
+	public boolean structurallyEquals(Subexpression other) {
+		if (!(other instanceof Tuple) || ((Tuple)other).args.size() != args.size())
+			return false;
+		for (int i = 0; i < args.size(); i++) {
+			if (!args.get(i).structurallyEquals(((Tuple)other).args.get(i)))
+				return false;
+		}
+		return true;
 	}
 
 }
@@ -30,7 +30,7 @@ public class TypeDefinition extends Expression {
 		if (!it.match(Token.Type.IDENTIFIER, end))
 			throw new ParseException("Type definition must have identifier following \"type\" keyword! ",
 					it.token(), " found instead.");
-		typeName = it.token().getValue();
+		typeName = it.value();
 		it.next(end);
 
 		if (it.match(Token.Type.ISA, end)) {
@@ -57,7 +57,7 @@ public class TypeDefinition extends Expression {
 				throw new ParseException("Unexpected token ", it.token(),
 						" found in super list for the definition of type \"", typeName, "\"!");
 			it.next(end);
-			if (it.tokens.get(stop).getType() == Token.Type.CLOSE_PAREN) {
+			if (it.tokens.getType(stop) == Token.Type.CLOSE_PAREN) {
 				// If the super list was aborted by a close parenthesis, we still need to see an assign.
 				if (!it.match(Token.Type.ASSIGN, end))
 					throw new ParseException("Type definition of \"", typeName,
@@ -116,7 +116,7 @@ public class Value extends Subexpression {
 	
 	protected Subexpression typify(TokenIterator it, int end) {
 		it.match(Token.Type.PERIOD, end);
-		switch(it.token().getType()) {
+		switch(it.type()) {
 		case NUMBER:
 		case TRUE:
 		case FALSE:
@@ -199,6 +199,7 @@ public class Value extends Subexpression {
 	public Value clone() {
 		Value cloned = new Value();
 		cloned.parent = parent;
+		cloned.startToken = startToken;
 		for (Subexpression sub: subexpressions) {
 			Subexpression sclone = sub.clone();
 			sclone.parent = cloned;
@@ -207,4 +208,26 @@ public class Value extends Subexpression {
 		return cloned;
 	}
 	
+	@Override
+	public int structuralHash() {
+		int hash = 1;
+		for (Subexpression sub: subexpressions)
+			hash = 31 * hash + sub.structuralHash();
+		return hash;
+	}
+	
+	@Override
+	public boolean structurallyEquals(Subexpression other) {
+		if (other == null || other.getClass() != getClass())
+			return false;
+		List<Subexpression> otherSubs = ((Value)other).subexpressions;
+		if (otherSubs.size() != subexpressions.size())
+			return false;
+		for (int i = 0; i < subexpressions.size(); i++) {
+			if (!subexpressions.get(i).structurallyEquals(otherSubs.get(i)))
+				return false;
+		}
+		return true;
+	}
+	
 }
@@ -12,6 +12,11 @@ public class LinePlacer {
 	/* The location where new lines will be written to. Saved as
 	 * the number of lines from the bottom. */
 	private int location = 0;
+	/* The number of labels placed, which changes as each new block begins. */
+	private int labels = 0;
+	/* The label of the block lines are placed in. The entry block of a function has none,
+	 * so it is numbered 0. */
+	private String block = "0";
 	
 	
 	public LinePlacer(List<String> startLines) {
@@ -23,6 +28,8 @@ public class LinePlacer {
 		outLines.add(outLines.size() - location, indent(line));
 	}
 	public void addLabel(String label) {
+		labels++;
+		block = label;
 		indentation--;
 		addLine(label, ":");
 		indentation++;
@@ -36,6 +43,28 @@ public class LinePlacer {
 			buf.append(line[i]);
 		return buf.toString();
 	}
+	/**
+	 * @return the number of labels placed so far. Lines placed while this is unchanged are in
+	 * the same block (unless a new function was begun).
+	 */
+	public int getLabels() {
+		return labels;
+	}
+	
+	/**
+	 * @return the label of the block new lines are placed in, which is the predecessor of any
+	 * block it branches to
+	 */
+	public String getBlock() {
+		return block;
+	}
+	/**
+	 * Begins the entry block of a new function.
+	 */
+	public void beginFunction() {
+		block = "0";
+	}
+	
 	public void deltaIndent(int indent) {
 		this.indentation += indent;
 	}
@@ -48,7 +77,7 @@ public class LinePlacer {
 	 * @return the state before placement at top scope
 	 */
 	public State getTop() {
-		State old = new State(location, indentation);
+		State old = new State(location, indentation, block);
 		location = outLines.size() - topLocation;
 		indentation = 0;
 		return old;
@@ -62,6 +91,7 @@ public class LinePlacer {
 	public void revertState(State oldState) {
 		location = oldState.location;
 		indentation = oldState.indents;
+		block = oldState.block;
 	}
 	
 	/**
@@ -72,11 +102,14 @@ public class LinePlacer {
 		public final int location;
 		/** The number of indents for the next line */
 		public final int indents;
+		/** The label of the block of the next line */
+		public final String block;
 		
 		/** Creates a new state, instantiating the given fields */
-		public State(int location, int indents) {
+		public State(int location, int indents, String block) {
 			this.location = location;
 			this.indents = indents;
+			this.block = block;
 		}
 	}
 	
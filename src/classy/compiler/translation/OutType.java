@@ -1,6 +1,6 @@
 package classy.compiler.translation;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import classy.compiler.analyzing.Type;
@@ -13,7 +13,8 @@ public class OutType {
 	protected int alignment = 8;
 	protected int size = 8;
 	
-	protected Map<String, Integer> fieldLocations = new HashMap<>();
+	// The supers and then the fields, in the order of their slots (and constructor parameters)
+	protected Map<String, Integer> fieldLocations = new LinkedHashMap<>();
 
 	
 	public OutType(Type linked, String mangledName, int typeNum) {
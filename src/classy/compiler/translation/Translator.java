@@ -5,12 +5,16 @@ import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Scanner;
 import java.util.Set;
 
+import classy.compiler.analyzing.Hierarchy;
 import classy.compiler.analyzing.ParameterType;
+import classy.compiler.analyzing.Reachability;
 import classy.compiler.analyzing.Type;
 import classy.compiler.analyzing.Variable;
 import classy.compiler.lexing.Token;
@@ -38,6 +42,43 @@ public class Translator {
 	
 	protected Map<Variable, String> varNames;
 	protected Map<Type, OutType> outTypes;
+	// The function of each implementation of a method, which may be called directly
+	protected Map<Variable, String> implNames = new HashMap<>();
+	protected Hierarchy hierarchy;
+	// The slot in each vtable of every method which may select one of several implementations
+	protected Map<Variable, Integer> vtableSlots = new HashMap<>();
+	protected String vtableType;
+	protected String ancestryType;
+	// The objects already cast up to an ancestor in the current block, by the object and the
+	//  tag of the ancestor, and the block they were cast in
+	protected Map<String, String> upcasts = new HashMap<>();
+	protected int upcastsBlock = 0;
+	// The number of upcasts translated with and without a call to @..super
+	protected Map<String, Integer> stats = new LinkedHashMap<>();
+	// What the result of the program is reached from, which decides what must be translated.
+	//  If null, everything is.
+	protected Reachability reach;
+	// The expressions whose values are returned by the function being translated, and its
+	//  signature and representation of its result. If the function calls itself in any of them,
+	//  it loops instead, keeping its parameters in stack slots.
+	protected Set<Expression> tails = new HashSet<>();
+	protected String tailSignature = null;
+	protected Type returning = null;
+	protected Variable looping = null;
+	protected Map<Variable, String> slots = new HashMap<>();
+	// Whether recursive functions (of only integers and booleans) save their results to look
+	//  up when called with the same arguments again
+	protected boolean memoize = false;
+	protected boolean memoLoaded = false;
+	// Whether integers and booleans are held as values (i32 and i1) rather than as objects,
+	//  wherever they are known to be exactly that type. They are only put in objects where one
+	//  is needed, such as a field or the argument of a method.
+	protected boolean unbox = false;
+	// The types (of Int and Bool) which have no descendants, so they are known exactly
+	protected Set<Type> exact = new HashSet<>();
+	// The variables held as values, by the type of the value
+	protected Map<Variable, Type> raw = new HashMap<>();
+	protected int ifNum = 1;
 	Set<String> namesUsed = new HashSet<>();
 	
 	// to prevent magic numbers / strings
@@ -46,6 +87,33 @@ public class Translator {
 
 	
 	public Translator(Value program, List<Variable> vars, List<Type> types) {
+		this(program, vars, types, null);
+	}
+	public Translator(Value program, List<Variable> vars, List<Type> types, Reachability reach) {
+		this(program, vars, types, reach, false);
+	}
+	public Translator(Value program, List<Variable> vars, List<Type> types, Reachability reach,
+			boolean memoize) {
+		this(program, vars, types, reach, memoize, false);
+	}
+	public Translator(Value program, List<Variable> vars, List<Type> types, Reachability reach,
+			boolean memoize, boolean unbox) {
+		this.reach = reach;
+		this.memoize = memoize;
+		this.unbox = unbox;
+		// An object of a descendant keeps the value of its ancestor elsewhere
+		exact.add(Type.Int);
+		exact.add(Type.Bool);
+		for (Type type: types) {
+			if (type.isFunction() || type.equals(Type.Int) || type.equals(Type.Bool))
+				continue;
+			if (reach != null && !reach.instantiates(type))
+				continue;
+			if (type.isa(Type.Int))
+				exact.remove(Type.Int);
+			if (type.isa(Type.Bool))
+				exact.remove(Type.Bool);
+		}
 		// Variables will receive a new name as they are assigned
 		varNames = new HashMap<>();
 		
@@ -103,6 +171,10 @@ public class Translator {
 		// Define the default types:
 		ArrayList<String> setup = new ArrayList<>();
 		for (Type t: types) {
+			// The built-in types are used by the translation itself, so they are always kept
+			if (reach != null && !reach.uses(t) && !t.equals(Type.Any) && !t.equals(Type.Int) &&
+					!t.equals(Type.Bool))
+				continue;
 			// create the struct with the name that mangling decided
 			// %struct.Bar = type { %struct.Foo, %struct.Foo }
 			StringBuilder typeLine = new StringBuilder("%");
@@ -133,13 +205,16 @@ public class Translator {
 			// Also, we want to keep track of the size of the struct
 			if (t.getFields() != null) {
 				Map<String, Variable> fields = t.getFields();
-				int size = fields.keySet().size();
-				type.size = 4 + 4*size;
+				// The tag is padded to the alignment of the pointers which follow
+				if (structLoc + fields.size() > 0)
+					type.size = 8 * (1 + structLoc + fields.size());
 				
+				// The fields are in the order of their slots, which the checker already decided
 				for (String varName : fields.keySet()) {
 					Variable field = fields.get(varName);
 					varNames.put(field, varName); // we don't have to mangle since it is in the struct
-					type.fieldLocations.put(varName, ++structLoc);
+					type.fieldLocations.put(varName, t.getMember(varName).getSlot());
+					++structLoc;
 					// cannot make the type literal since it may receive a subtype
 					typeLine.append(", " + voidPtr);
 				}
@@ -151,109 +226,60 @@ public class Translator {
 		lines = new LinePlacer(setup);
 		
 		// We must process all of the types before any dynamic dispatch methods
+		// Each implementation of a method is a function of its own. Where an override may be
+		//  selected, the method has a slot in the vtable of each type, which holds the
+		//  implementation that type selects. Otherwise, the method is its only implementation.
+		hierarchy = new Hierarchy(types, reach);
+		List<Variable> methods = new ArrayList<>();
 		for (Type t: types) {
-			// We also want to translate all the methods of the type
-			Map<String, Map<String, List<String>>> typeLibrary = new HashMap<>();
-			if (t.getMethods() != null) {
-				varNum = 1;
-				Map<String, Variable> methods = t.getMethods();
-				for (String methodName: methods.keySet()) {
-					// If this method is a constructor, we disable it (since constructor created
-					//  for all user-defined types with the define)
-					if (methodName.startsWith("..new"))
-						continue;
-					Variable method = methods.get(methodName);
-					// If this method overrides another, then don't print it
-					if (!method.isOverridden())
-						continue;
-					// Save this method (the super) to varNames
-					String mangMethod = mangle(methodName);
-					varNames.put(method, mangMethod);
-					// We will print the dynamic dispatch of this method and all overrides
-					
-					StringBuffer decl = new StringBuffer();
-					Type fxType = method.getType();
-					if (fxType == null)
-						continue;
-					decl.append("define dso_local ");
-					if (fxType.getOutput() != null)
-						decl.append(voidPtr);
-					else
-						decl.append("void");
-					decl.append(" @");
-					decl.append(mangMethod);
-					decl.append("(");
-					boolean first = true;
-					// if sourced is not null, we need to work from it to mange appropriate variables
-					if (method.getSource() != null) {
-						for (Parameter p: ((Assignment)method.getSource()).getParamList()) {
-							if (first)
-								first = false;
-							else
-								decl.append(", ");
-							decl.append(voidPtr);
-							decl.append(" ");
-							String pName = "%" + (p.getName().equals("this")? "this": mangle(p.getName()));
-							varNames.put(p.getSourced(), pName);
-							decl.append(pName);
-						}
-					}else {
-						for (ParameterType ptype: fxType.getInputs()) {
-							if (first)
-								first = false;
-							else
-								decl.append(", ");
-							decl.append(voidPtr);
-							decl.append(" %");
-							decl.append(ptype.getName());
-						}
-					}
-					decl.append(") {");
-					lines.addLine(decl.toString());
-					varNum = 1;
-					lines.deltaIndent(1);
-					
-					// Here is where we want to print the dynamic dispatch part
-					// If the calling type does not match any of our options,
-					//  then it falls through to this implementation
-					OutType oAny = outTypes.get(Type.Any);
-					String casted = "%" + bitCast("%this", oAny);
-					String tagAt = "%" + getElementPtr(casted, outTypes.get(Type.Any), 0);
-					String tag = "%" + load(tagAt, "i32", "4");
-					
-					for (Variable override : method.getOverrides()) {
-						// Save for the overriders to use the super
-						varNames.put(override, mangMethod);
-						// Get the type number for this variable
-						Type thisType = override.getType().getInputs()[0].getType();
-						OutType outType = outTypes.get(thisType);
-						
-						String cmp = "%" + varNum++;
-						lines.addLine(cmp, " = icmp eq i32 ", tag, ", " + outType.typeNum);
-						//br i1 %6, label %7, label %8
-						String match = "is" + outType.mangledName;
-						String next = "next" + varNum;
-						lines.addLine("br i1 ", cmp, ", label %", match, ", label %" + next);
-						lines.addLabel(match);
-						
-						// Translate the override
-						translateOverride(override, typeLibrary);
-						lines.addLabel(next);
-					}
-					
-					// Translate method.value
-					translateOverride(method, typeLibrary);
-					lines.deltaIndent(-1);
-					lines.addLine("}");
-					lines.addLine();
-				}
+			if (t.getMethods() == null)
+				continue;
+			for (String methodName: t.getMethods().keySet()) {
+				// If this method is a constructor, we disable it (since constructor created
+				//  for all user-defined types with the define)
+				if (methodName.startsWith("..new"))
+					continue;
+				Variable method = t.getMethods().get(methodName);
+				// If this method overrides another, then it is printed with that
+				if (!method.isOverridden() || method.getType() == null)
+					continue;
+				// Nor if it is never called
+				if (reach != null && !reach.reaches(method))
+					continue;
+				methods.add(method);
+				// Every name is saved before any body is translated, since they may call each other
+				String mangMethod = mangle(methodName);
+				List<Variable> impls = implementationsOf(method);
+				for (Variable impl: impls)
+					implNames.put(impl, mangMethod + "." + outTypes.get(Hierarchy.receiverOf(impl)).mangledName);
+				// A method with several implementations is found in the vtable of its object
+				if (impls.size() > 1)
+					vtableSlots.put(method, vtableSlots.size());
+				String called = (impls.size() == 1)? implNames.get(method) : mangMethod;
+				varNames.put(method, called);
+				for (Variable override: method.getOverrides())
+					varNames.put(override, called);
+			}
+		}
+		translateVtables(types);
+		Map<String, Map<String, List<String>>> typeLibrary = new HashMap<>();
+		for (Variable method: methods) {
+			List<Variable> impls = implementationsOf(method);
+			for (Variable impl: impls) {
+				lines.addLine(declare(method, impl, implNames.get(impl)));
+				beginFunction();
+				lines.deltaIndent(1);
+				translateOverride(impl, typeLibrary);
+				lines.deltaIndent(-1);
+				lines.addLine("}");
+				lines.addLine();
 			}
 		}
 		
 		//lines.addLine();
 		lines.addLine("define dso_local i32 @main() {");
 		lines.deltaIndent(1);
-		varNum = 1;
+		beginFunction();
 		
 		// Previously we could allocate space for the return before we continued.
 		//  This is not possible with the inheritance tree we set up, since subclasses
@@ -266,7 +292,10 @@ public class Translator {
 		
 		// TODO: We will have to use a dynamic dispatch of toString, since we won't necessarily
 		//  know statically that the variable is an int even if it is.
-		lines.addLine("call void @..print(i8* ", retAt, ")");
+		Type printed = (reach == null || reach.getPrinted() == null || !reach.getPrinted().isFrozen())?
+				null : reach.getPrinted();
+		String print = callee(Type.Any.getMethods().get("..print"), printed, new String[] {retAt});
+		lines.addLine("call void ", print, "(i8* ", retAt, ")");
 		lines.addLine("ret i32 0");
 		lines.deltaIndent(-1);
 		lines.addLine("}");
@@ -274,78 +303,332 @@ public class Translator {
 		
 		// Lastly, we need to create the "..super" method, which will allow us to cast from a type
 		//  to one of its ancestors.
-		// We need to allow for this method to be called on any type in our system. The pattern
-		//  here is similar to the method overriding, but no type should be aware of this method,
-		//  so we do it all internally instead of on a type basis.
+		// We need to allow for this method to be called on any type in our system, so the path
+		//  from each type to each of its ancestors is saved in a table. It is followed one parent
+		//  at a time, since the parent of an object may itself be of a descendant type.
+		translateAncestry();
 		lines.addLine("define dso_local ", voidPtr, " @..super(", voidPtr, " %this, i32 %exp) {");
 		lines.deltaIndent(1);
 		varNum = 1;
-		// Get the type of this
+		lines.addLine("br label %walk");
+		lines.addLabel("walk");
+		lines.addLine("%obj = phi ", voidPtr, " [ %this, %0 ], [ %parent, %up ]");
+		// If the type is currently what is desired, return this
 		OutType anyType = outTypes.get(Type.Any);
-		String any = "%" + bitCast("%this", anyType);
+		String any = "%" + bitCast("%obj", anyType);
 		String typeAt = "%" + getElementPtr(any, anyType, 0);
-		// Need to load the type for the comparison
-		String typeVal = "%" + load(typeAt, "i32", "4");
-		// If the type is currently what is desired, return this
-		int compared = varNum++;
-		lines.addLine("%" + compared, " = icmp eq i32 ", typeVal, ", %exp");
-		String nextTc = "next" + 0; // next type check
-		lines.addLine("br i1 %"+compared, ", label %isMatch, label %", nextTc);
+		String typeVal = "%" + load(typeAt, tagType, "4");
+		String compared = "%" + varNum++;
+		lines.addLine(compared, " = icmp eq i32 ", typeVal, ", %exp");
+		lines.addLine("br i1 ", compared, ", label %isMatch, label %next");
 		lines.addLabel("isMatch");
-		lines.addLine("ret ", voidPtr, " %this");
-		
-		int typeCheck = 0;
-		for (Type type : types) {
-			OutType oType = outTypes.get(type);
-			String isThis = "isCheck" + typeCheck;
-			String isMatch = "isMatch" + typeCheck;
-			
-			int parent = 0;
-			// Search for all parents of this type
-			while(oType.fieldLocations.containsKey("..super" + parent)) {
-				if (parent == 0) { // if this is the first cycle for the type
-					lines.addLabel(nextTc);
-					++typeCheck;
-					nextTc = "next" + typeCheck;
-					// check to see if this tag matches this type
-					lines.addLine("%", isThis, " = icmp eq i32 ", typeVal, ", " + oType.typeNum);
-					lines.addLine("br i1 %", isThis, ", label %", isMatch, ", label %", nextTc);
-					lines.addLabel(isMatch);
-				}
-				String casted = "%" + bitCast("%this", oType);
-				String parAt = "%" + getElementPtr(casted, oType, oType.fieldLocations.get("..super"+parent));
-				String parPtr = "%" + load(parAt, voidPtr, "4"); // get the parent in the struct
-				String par = "in" + oType.typeNum + "p" + parent;
-				// Make a recursive call to try to match with the parent
-				lines.addLine("%", par, " = call ", voidPtr, " @..super(", voidPtr, " ", parPtr, ", i32 %exp)");
-				// If we get back null, then that parent was not a match
-				// But if it is not null, then we return that
-				// Make the null check here
-				String nullCheck = "%" + varNum++;
-				lines.addLine(nullCheck, " = icmp ne ", voidPtr, " null, %", par);
-				
-				// We need to know if there are any more parents of this type
-				boolean moreParents = oType.fieldLocations.containsKey("..super" + (++parent));
-				String nextLabel = (moreParents)? "n"+par : nextTc;
-				lines.addLine("br i1 ", nullCheck, ", label %y", par, ", label %", nextLabel);
-				lines.addLabel("y" + par);
-				lines.addLine("ret ", voidPtr, " %", par); // return what we got
-				// If there is another parent, add the branch here.
-				//  Otherwise, the next type (or end) will take care of the label.
-				if (moreParents)
-					lines.addLabel("n" + par);
-			}
-		}
-		lines.addLabel(nextTc);
+		lines.addLine("ret ", voidPtr, " %obj");
+		lines.addLabel("next");
+		// Otherwise, find which parent leads to the desired type, if any
+		String hopAt = "%" + varNum++;
+		lines.addLine(hopAt, " = getelementptr inbounds ", ancestryType, ", ", ancestryType,
+				"* @..ancestry, i32 0, i32 ", typeVal, ", i32 %exp");
+		String hop = "%" + load(hopAt, tagType, "4");
+		String none = "%" + varNum++;
+		lines.addLine(none, " = icmp eq i32 ", hop, ", 0");
+		lines.addLine("br i1 ", none, ", label %noMatch, label %up");
+		lines.addLabel("noMatch");
 		lines.addLine("ret ", voidPtr, " null"); // if we did not get anything, then return null
+		lines.addLabel("up");
+		String slots = "%" + varNum++;
+		lines.addLine(slots, " = bitcast ", voidPtr, " %obj to ", voidPtr, "*");
+		String parentAt = "%" + varNum++;
+		lines.addLine(parentAt, " = getelementptr inbounds ", voidPtr, ", ", voidPtr, "* ", slots, ", i32 ", hop);
+		lines.addLine("%parent = load ", voidPtr, ", ", voidPtr, "* ", parentAt, ", align 8");
+		lines.addLine("br label %walk");
 		lines.deltaIndent(-1);
 		lines.addLine("}");
 	}
 	
+	/**
+	 * Defines the table of ancestry, which holds for each pair of tags the slot in the structure
+	 * of the first type of the parent which leads to the second, or 0 if none does. The parents
+	 * are searched in order, as the members of a type are.
+	 */
+	protected void translateAncestry() {
+		Type[] byTag = new Type[outTypes.size() + 1];
+		for (OutType type: outTypes.values())
+			byTag[type.typeNum] = type.linked;
+		String row = "[" + byTag.length + " x " + tagType + "]";
+		ancestryType = "[" + byTag.length + " x " + row + "]";
+		StringBuffer table = new StringBuffer("@..ancestry = private unnamed_addr constant ");
+		table.append(ancestryType);
+		table.append(" [");
+		for (int tag = 0; tag < byTag.length; tag++) {
+			table.append((tag == 0)? "" : ", ");
+			table.append(row);
+			table.append(" [");
+			for (int wanted = 0; wanted < byTag.length; wanted++) {
+				table.append((wanted == 0)? "" : ", ");
+				table.append(tagType);
+				int parent = parentToward(byTag[tag], byTag[wanted]);
+				table.append(" " + ((parent == -1)? 0 : outTypes.get(byTag[tag]).fieldLocations.get("..super" + parent)));
+			}
+			table.append("]");
+		}
+		table.append("]");
+		LinePlacer.State oldState = lines.getTop();
+		lines.addLine(table.toString());
+		lines.revertState(oldState);
+	}
+	
+	/**
+	 * @return the index of the first parent of the type which is (or descends from) the
+	 * ancestor, or -1 if there is none
+	 */
+	protected int parentToward(Type type, Type ancestor) {
+		if (type == null || ancestor == null || type == ancestor || type.getParents() == null)
+			return -1;
+		OutType oType = outTypes.get(type);
+		for (int i = 0; i < type.getParents().length; i++) {
+			Type parent = type.getParents()[i];
+			// Any is not kept as a parent in the structure
+			if (parent != null && parent != type && oType.fieldLocations.containsKey("..super" + i) &&
+					parent.isa(ancestor))
+				return i;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Casts the object, known to be of the type given, up to the ancestor wanted. Where every
+	 * object on the way must be exactly of its type, the parents are loaded in turn without any
+	 * search. Otherwise, the path is found by @..super.
+	 */
+	protected String upcast(String obj, Type known, Type wanted) {
+		List<Integer> path = new ArrayList<>();
+		for (Type at = known; path != null && at != wanted; ) {
+			int parent = (at == null || !hierarchy.isExact(at))? -1 : parentToward(at, wanted);
+			if (parent == -1)
+				path = null;
+			else {
+				path.add(outTypes.get(at).fieldLocations.get("..super" + parent));
+				at = at.getParents()[parent];
+			}
+		}
+		if (path == null || !hierarchy.isExact(wanted))
+			return callSuper(obj, wanted);
+		count("upcasts removed");
+		for (int slot: path) {
+			String slots = "%" + varNum++;
+			lines.addLine(slots, " = bitcast ", voidPtr, " ", obj, " to ", voidPtr, "*");
+			String parentAt = "%" + varNum++;
+			lines.addLine(parentAt, " = getelementptr inbounds ", voidPtr, ", ", voidPtr, "* ", slots, ", i32 " + slot);
+			obj = "%" + load(parentAt, voidPtr, "8");
+		}
+		return obj;
+	}
+	
+	/**
+	 * Casts the object up to the ancestor wanted with @..super, unless the same object was
+	 * already cast to it earlier in the block.
+	 */
+	protected String callSuper(String obj, Type wanted) {
+		if (upcastsBlock != lines.getLabels()) {
+			upcasts.clear();
+			upcastsBlock = lines.getLabels();
+		}
+		int tag = outTypes.get(wanted).typeNum;
+		String supered = upcasts.get(obj + " " + tag);
+		if (supered != null) {
+			count("upcasts removed");
+			return supered;
+		}
+		supered = "%" + varNum++;
+		lines.addLine(supered, " = call ", voidPtr, " @..super(", voidPtr, " ", obj, ", i32 " + tag + ")");
+		upcasts.put(obj + " " + tag, supered);
+		count("upcasts kept");
+		return supered;
+	}
+	
+	/**
+	 * Begins the body of a function, whose registers are numbered anew.
+	 */
+	protected void beginFunction() {
+		varNum = 1;
+		upcasts = new HashMap<>();
+		lines.beginFunction();
+	}
+	
+	protected void count(String kind) {
+		stats.merge(kind, 1, Integer::sum);
+	}
+	
+	/**
+	 * @return the implementations of the method which may be selected: the method itself, then
+	 * any override which may be dispatched to
+	 */
+	protected List<Variable> implementationsOf(Variable method) {
+		List<Variable> impls = new ArrayList<>();
+		impls.add(method);
+		for (Variable override: method.getOverrides()) {
+			// An override need not be checked for if no object could select it
+			if (reach == null || reach.dispatches(override))
+				impls.add(override);
+		}
+		return impls;
+	}
+	
+	/**
+	 * Creates the line which begins the definition of a function for the method given, which
+	 * takes the parameters of the implementation given.
+	 */
+	protected String declare(Variable method, Variable impl, String name) {
+		StringBuffer decl = new StringBuffer();
+		decl.append("define dso_local ");
+		if (method.getType().getOutput() != null)
+			decl.append(voidPtr);
+		else
+			decl.append("void");
+		decl.append(" @");
+		decl.append(name);
+		decl.append("(");
+		boolean first = true;
+		// if sourced is not null, we need to work from it to mange appropriate variables
+		if (impl.getSource() != null) {
+			for (Parameter p: ((Assignment)impl.getSource()).getParamList()) {
+				if (first)
+					first = false;
+				else
+					decl.append(", ");
+				decl.append(voidPtr);
+				decl.append(" ");
+				String pName = "%" + (p.getName().equals("this")? "this": mangle(p.getName()));
+				varNames.put(p.getSourced(), pName);
+				decl.append(pName);
+			}
+		}else {
+			for (ParameterType ptype: impl.getType().getInputs()) {
+				if (first)
+					first = false;
+				else
+					decl.append(", ");
+				decl.append(voidPtr);
+				decl.append(" %");
+				decl.append(ptype.getName());
+			}
+		}
+		decl.append(") {");
+		return decl.toString();
+	}
+	
+	/**
+	 * Defines the vtable of every type, which holds the implementation that type selects of each
+	 * method which is dispatched. The table is indexed by tag, so the vtable of an object is the
+	 * row for its tag, and each method is at its slot in that row.
+	 */
+	protected void translateVtables(List<Type> types) {
+		if (vtableSlots.isEmpty())
+			return;
+		Variable[] methods = new Variable[vtableSlots.size()];
+		for (Variable method: vtableSlots.keySet())
+			methods[vtableSlots.get(method)] = method;
+		Type[] byTag = new Type[outTypes.size() + 1];
+		for (OutType type: outTypes.values())
+			byTag[type.typeNum] = type.linked;
+		
+		String row = "[" + methods.length + " x " + voidPtr + "]";
+		vtableType = "[" + byTag.length + " x " + row + "]";
+		StringBuffer table = new StringBuffer("@..vtable = private unnamed_addr constant ");
+		table.append(vtableType);
+		table.append(" [");
+		for (int tag = 0; tag < byTag.length; tag++) {
+			table.append((tag == 0)? "" : ", ");
+			table.append(row);
+			table.append(" [");
+			for (int slot = 0; slot < methods.length; slot++) {
+				Variable method = methods[slot];
+				Variable impl = null;
+				// Types which have no objects, or do not have the method, are never looked up
+				if (byTag[tag] != null)
+					impl = hierarchy.implementations(method, Hierarchy.receiverOf(method)).get(byTag[tag]);
+				// An override which is never dispatched to falls back to the method itself
+				if (impl != null && !implNames.containsKey(impl))
+					impl = method;
+				table.append((slot == 0)? "" : ", ");
+				table.append(voidPtr);
+				if (impl == null)
+					table.append(" null");
+				else
+					table.append(" bitcast (" + functionType(method) + " @" + implNames.get(impl) + " to " + voidPtr + ")");
+			}
+			table.append("]");
+		}
+		table.append("]");
+		lines.addLine(table.toString());
+		lines.addLine();
+	}
+	
+	/**
+	 * @return the type of a pointer to a function implementing the method given
+	 */
+	protected String functionType(Variable method) {
+		StringBuffer fx = new StringBuffer((method.getType().getOutput() != null)? voidPtr : "void");
+		fx.append(" (");
+		for (int i = 0; i < method.getType().getInputs().length; i++) {
+			fx.append((i == 0)? "" : ", ");
+			fx.append(voidPtr);
+		}
+		fx.append(")*");
+		return fx.toString();
+	}
+	
+	/**
+	 * Finds the function a call should be made to. A call to a method whose location can only
+	 * select one implementation calls it directly. Otherwise, the implementation is loaded from
+	 * the vtable of the object the method is called on.
+	 * @param fx the variable called
+	 * @param receiver the type the object is known to have, or null if it is not a method call
+	 * @param argsAt the arguments of the call, in the order of its parameters
+	 * @return the function, as a global name or a register
+	 */
+	protected String callee(Variable fx, Type receiver, String[] argsAt) {
+		// Which types may have objects is only known when optimizing
+		if (reach != null && receiver != null) {
+			Variable impl = hierarchy.monomorphic(fx, receiver);
+			if (impl != null && implNames.containsKey(impl))
+				return "@" + implNames.get(impl);
+		}
+		Variable method = fx.isOverridden()? fx : fx.getOverrides().get(0);
+		if (!vtableSlots.containsKey(method))
+			return "@" + varNames.get(fx);
+		
+		// The object is the argument given for this
+		String object = null;
+		ParameterType[] inputs = method.getType().getInputs();
+		for (int i = 0; i < inputs.length && i < argsAt.length; i++) {
+			if (inputs[i].getName().equals("this"))
+				object = argsAt[i];
+		}
+		OutType oAny = outTypes.get(Type.Any);
+		String casted = "%" + bitCast(object, oAny);
+		String tagAt = "%" + getElementPtr(casted, oAny, 0);
+		String tag = "%" + load(tagAt, tagType, "4");
+		String entry = "%" + varNum++;
+		lines.addLine(entry, " = getelementptr inbounds ", vtableType, ", ", vtableType, "* @..vtable, i32 0, i32 ",
+				tag, ", i32 " + vtableSlots.get(method));
+		String impl = "%" + load(entry, voidPtr, "8");
+		String called = "%" + varNum++;
+		lines.addLine(called, " = bitcast ", voidPtr, " ", impl, " to ", functionType(method));
+		return called;
+	}
+	
 	protected void translateOverride(Variable override, Map<String, Map<String, List<String>>> typeLibrary) {
 		if (override.getValue() != null) {
+			// Methods may end in calls to others, but calls to themselves are dispatched
+			tails = new HashSet<>();
+			tailSignature = signature(null, new Type[override.getType().getInputs().length]);
+			returning = null;
+			findTails(override.getValue(), null);
 			String retAt = translate(override.getValue());
-			lines.addLine("ret ", voidPtr, " ", retAt);
+			if (retAt != null)
+				lines.addLine("ret ", voidPtr, " ", retAt);
+			tails = new HashSet<>();
 		}else { // If it is null, then we assume it is saved as a built-in library
 			if (override.getType().getInputs().length < 1)
 				return;
@@ -459,42 +742,7 @@ public class Translator {
 				retAt = translate(be);
 			return retAt;
 		}else if (e instanceof If) {
-			If if_ = (If)e;
-			// We want to find the result of the condition, then jump from there
-			String cond = translate(if_.getCondition());
-			// We must find the boolean dynamically. There is no other way.
-			OutType oBool = outTypes.get(Type.Bool);
-			String ocond = "%" + varNum++;
-			lines.addLine(ocond, " = call ", voidPtr, " @..super(", voidPtr, " ", cond, ", i32 " + oBool.typeNum, ")");
-			// cast to what we need (Bool) before use
-			int toBool = bitCast(ocond, oBool);
-			String inBool = "%" + getElementPtr("%"+toBool, oBool, 1);
-			String loaded = load(inBool, "i1", "4")+"";
-			
-			//int compare = varNum++;
-			//lines.addLine("%", Integer.toString(compare), " = icmp eq i32 %", Integer.toString(loaded),", 0");
-			String tbranch = "then" + loaded;
-			String fbranch = "else" + loaded;
-			String next = "next" + loaded;
-			
-			// Phi's do not work well nested (since we would have to keep track of the most recent predecessor)
-			//  so instead, we allocate some space here for the return, which is saved to by the then or else.
-			String toReturn = "%" + allocate(voidPtr, "1");
-			// branch to either the true or false case
-			lines.addLine("br i1 %", loaded, ", label %", tbranch, ", label %", fbranch);
-			
-			lines.addLabel(tbranch);
-			String thenAt = translate(if_.getThen());
-			store(thenAt, voidPtr, "1", toReturn);
-			lines.addLine("br label %", next);
-			
-			lines.addLabel(fbranch);
-			String elseAt = translate(if_.getElse());
-			store(elseAt, voidPtr, "1", toReturn);
-			lines.addLine("br label %", next);
-			
-			lines.addLabel(next);
-			return "%" + load(toReturn, voidPtr, "1");
+			return translateIf((If)e, null);
 		}else if (e instanceof Literal) {
 			// Literals can live statically. We want to make it global so that it has
 			//  infinite scope, (since we don't know how it will be used).
@@ -553,8 +801,12 @@ public class Translator {
 			// First, we must find if this is a value assignment or a function assignment
 			if (!asgnVar.getType().isFunction()) {
 				//allocate(check(asgn.getValue()), name);
+				// An integer or boolean is kept as its value
+				Type repr = reprOf(asgnVar.getType());
+				if (repr != null)
+					raw.put(asgnVar, repr);
 				// We will get the location of the value at got
-				String got = translate(asgn.getValue());
+				String got = translate(asgn.getValue(), repr);
 				// Then we need to save that we are at got
 				varNames.put(asgn.getSourced(), got);
 			}else {
@@ -566,26 +818,40 @@ public class Translator {
 				//  level. Thus, we start at the top scope, saving our old location to revert
 				//  back after
 				int prevVarNum = this.varNum;
-				this.varNum = 1;
+				Map<String, String> prevUpcasts = upcasts;
 				this.inFunction++;
 				LinePlacer.State oldState = lines.getTop();
+				beginFunction();
+				Set<Expression> prevTails = tails;
+				String prevTailSignature = tailSignature;
+				Type prevReturning = returning;
+				Variable prevLooping = looping;
+				// Parameters and the result are values where they are known to be integers or booleans
+				Type[] reprs = paramReprs(asgnVar);
+				tails = new HashSet<>();
+				returning = returnRepr(asgnVar);
+				tailSignature = signature(returning, reprs);
+				looping = findTails(asgn.getValue(), asgnVar)? asgnVar : null;
 				
 				// We want to mangle the function name to make sure there are no overlaps
 				String name = mangle(asgn.getVarName());
 				varNames.put(asgn.getSourced(), name);
+				// A memoized function is defined by a lookup, which calls its body when it must
+				boolean memo = memoize && isMemoizable(asgn);
 				
 				String[] lineCmps = new String[4 + (2 * asgn.getParamList().size())];
-				lineCmps[0] = "define dso_local " + voidPtr + " @";
-				lineCmps[1] = name;
+				lineCmps[0] = "define dso_local " + irType(returning) + " @";
+				lineCmps[1] = memo? name + ".body" : name;
 				lineCmps[2] = "(";
 				int i = 3;
-				for (Parameter parameter: asgn.getParamList()) {
+				for (int k = 0; k < reprs.length; k++) {
+					Parameter parameter = asgn.getParamList().get(k);
 					String paramName = mangle(parameter.getName());
 					varNames.put(parameter.getSourced(), "%" + paramName);
-					if (i > 3)
-						lineCmps[i++] = ", " + voidPtr + " %";
-					else
-						lineCmps[i++] = voidPtr + " %";
+					if (reprs[k] != null)
+						raw.put(parameter.getSourced(), reprs[k]);
+					lineCmps[i] = ((i > 3)? ", " : "") + irType(reprs[k]) + " %";
+					i++;
 					lineCmps[i++] = paramName;
 				}
 				lineCmps[i++] = ") {";
@@ -593,15 +859,38 @@ public class Translator {
 				lines.addLine(lineCmps);
 				lines.deltaIndent(1);
 				
-				String fRet = translate(asgn.getValue());
-				lines.addLine("ret ", voidPtr, " ", fRet);
+				if (looping != null) {
+					// Each call to itself stores its arguments to the slots of the parameters,
+					//  then jumps back to the loop
+					for (int k = 0; k < reprs.length; k++) {
+						Variable param = asgn.getParamList().get(k).getSourced();
+						String slot = "%" + allocate(irType(reprs[k]), "8");
+						store(varNames.get(param), irType(reprs[k]), "8", slot);
+						slots.put(param, slot);
+					}
+					lines.addLine("br label %loop");
+					lines.addLabel("loop");
+				}
+				String fRet = translate(asgn.getValue(), returning);
+				// If the value was returned in each branch already, there is nothing left to return
+				if (fRet != null)
+					lines.addLine("ret ", irType(returning), " ", fRet);
 				lines.deltaIndent(-1);
 				lines.addLine("}");
+				if (memo) {
+					lineCmps[1] = name;
+					memoize(asgn, lineCmps, reprs, returning);
+				}
 				
 				// then the function declaration is done. Restore the state
 				lines.revertState(oldState);
 				this.varNum = prevVarNum;
 				this.inFunction--;
+				upcasts = prevUpcasts;
+				tails = prevTails;
+				tailSignature = prevTailSignature;
+				returning = prevReturning;
+				looping = prevLooping;
 			}
 			return null;
 		}else if (e instanceof Reference) {
@@ -613,270 +902,539 @@ public class Translator {
 			if (ref.getArgument() == null) {
 				// Regular reference
 				// If the reference has no location, then we can simply return the mangled name
-				if (!ref.isMember())
-					return name;
+				if (!ref.isMember()) {
+					// A value must be put in an object where one is expected
+					Type repr = raw.get(ref.getLinkedTo());
+					String value = read(ref.getLinkedTo());
+					return (repr == null)? value : box(value, repr);
+				}
 				// Otherwise, it is a field, so we need to compute the location, then call from there
 				Reference.MemberData dat = ref.getMemberData();
 				String location = translate(dat.location);
-				String supered = "%" + varNum++;
 				OutType oType = outTypes.get(dat.memberOf);
 				// cast up from the type returned (as necessary)
-				lines.addLine(supered + " = call ", voidPtr, " @..super(", voidPtr, " ",
-						location, ", i32 " + oType.typeNum + ")");
+				String supered = upcast(location, dat.receiver, dat.memberOf);
 				// Now we can cast the supered location to the type that we need to access the field
 				String casted = "%" + bitCast(supered, oType);
-				String fieldAt = "%" + getElementPtr(casted, oType, oType.fieldLocations.get(name));
+				// The slot of the field is known statically from the member table
+				int slot = dat.memberOf.getMember(ref.getLinkedTo().getName()).getSlot();
+				String fieldAt = "%" + getElementPtr(casted, oType, slot);
 				return "%" + load(fieldAt, voidPtr, "8");
-			}else {
-				// Function call
-				Value argument = ref.getArgument();
-				Value[] args;
-				if (argument.getSubexpressions().get(0) instanceof Tuple) {
-					Tuple ls = (Tuple)argument.getSubexpressions().get(0);
-					args = ls.getArgs().toArray(new Value[] {});
-				}else
-					args = new Value[] {argument};
-				
-				String[] argsAt = new String[args.length];
-				int i=0;
-				for (Value arg: args) {
-					argsAt[i] = translate(arg);
-					i++;
-				}
-				
-				int returned = varNum++;
-				String[] callComps = new String[6 + 2*args.length];
-				callComps[0] = "%";
-				callComps[1] = Integer.toString(returned);
-				callComps[2] = " = call " + voidPtr + " @";
-				callComps[3] = name;
-				callComps[4] = "(";
-				int j = 5;
-				for (i=0; i<args.length; i++) {
-					if (j == 5) // first
-						callComps[j++] = voidPtr + " ";
-					else
-						callComps[j++] = ", " + voidPtr + " ";
-					callComps[j++] = argsAt[i];
-				}
-				callComps[j] = ")";
-				lines.addLine(callComps);
-				return "%" + returned;
 			}
+			// Function call
+			return translateCall(ref, null);
+		}else if (e instanceof Operation) {
+			Operation op = (Operation)e;
+			return box(operate(op), resultOf(op));
 		}
-		else if (e instanceof Operation) {
-			// Create an extension to literal for setting global results
-			class GlobalLiteral extends Literal {
-				public GlobalLiteral(Token.Type type, String value) {
-					super(null);
-					this.startToken = new Token(value, type, -1, -1);
-				}
-			}
-			
-			// Handle all operations that require boolean inputs (true or false)
-			//  These operations are "NOT" and the boolean (2 operands) "AND" and "OR".
-			if (e instanceof Operation.Not) {
-				Operation not = (Operation)e;
-				List<Subexpression> opRhs = not.getRHS().getSubexpressions();
-				if (opRhs.size() == 1 && opRhs.get(0) instanceof Literal) {
-					// We can optimize if it is an int literal by a direct output
-					String rhs = ((Literal)opRhs.get(0)).getToken().getValue();
-					// We want to find the truth of the literal
-					if (rhs.equals("true"))
-						return setGlobalLiteral(new GlobalLiteral(Token.Type.FALSE, "false"), true);
-					else
-						return setGlobalLiteral(new GlobalLiteral(Token.Type.TRUE, "true"), true);
-				}
-				String rhs = translate(not.getRHS());
-				
-				// If we got here, then we cannot know the result of this expression until runtime.
-				OutType oBool = outTypes.get(Type.Bool);
-				// cast to what we need (bool) before use
-				int toBoolR = bitCast(rhs, oBool);
-				String atBitR = "%" + getElementPtr("%"+toBoolR, oBool, 1);
-				int bitR = load(atBitR, "i1", "1");
-				
-				String res = "%" + varNum++;
-				lines.addLine(res, " = xor i1 %"+bitR, ", true");
-				// Lastly, we create a global that can receive this value
-				
-				String lit = newObject(oBool, false);
-				String atLitVal = "%" + getElementPtr(lit, oBool, 1);
-				store(res, "i1", "1", atLitVal);
-				
-				return "%" + castVoidPtr(lit, oBool);
-				
-			}else if (e instanceof BinOp.And || e instanceof BinOp.Or) {
-				BinOp bop = (BinOp)e;
-				boolean bothNeeded = e instanceof BinOp.And;
-				boolean firstTrue = false;
-				// We evaluate the left first, since we could short circuit and avoid evaluating right
-				List<Subexpression> opLhs = bop.getLHS().getSubexpressions();
-				String lhs = null;
-				if (opLhs.size() == 1 && opLhs.get(0) instanceof Literal) {
-					// We can optimize if it is a literal by a direct output
-					lhs = ((Literal)opLhs.get(0)).getToken().getValue();
-					// We want to find the truth of the literal
-					firstTrue = lhs.equals("true");
-					
-					if (!bothNeeded && firstTrue)
-						// we can quit early, since the operation has been decided
-						return setGlobalLiteral(new GlobalLiteral(Token.Type.TRUE, "true"), true); 
-					else if (bothNeeded && !firstTrue)
-						return setGlobalLiteral(new GlobalLiteral(Token.Type.FALSE, "false"), true);
-				}
-				List<Subexpression> opRhs = bop.getLHS().getSubexpressions();
-				boolean secondTrue;
-				String rhs = null;
-				if (opRhs.size() == 1 && opRhs.get(0) instanceof Literal) {
-					// We can optimize if it is an int literal by a direct output
-					rhs = ((Literal)opRhs.get(0)).getToken().getValue();
-					// We want to find the truth of the literal
-					secondTrue = rhs.equals("true");
-					if ((bothNeeded && firstTrue && secondTrue) // both are literal true on an AND
-							|| (!bothNeeded && secondTrue))     // the second is true for an OR
-						return setGlobalLiteral(new GlobalLiteral(Token.Type.TRUE, "true"), true);
-					else if (bothNeeded && !secondTrue) // the second is literal false in an AND
-						return setGlobalLiteral(new GlobalLiteral(Token.Type.FALSE, "false"), true);
-				}
-				
-				// If we got here, then we cannot know the result of this expression until runtime.
-				OutType oBool = outTypes.get(Type.Bool);
-				if (lhs == null) { // if lhs was not a literal, load it in
-					lhs = translate(bop.getLHS());
-					// cast to what we need (bool) before use
-					int toBoolL = bitCast(lhs, oBool);
-					String atBitL = "%" + getElementPtr("%"+toBoolL, oBool, 1);
-					lhs = "%" + load(atBitL, "i1", "1");
-				}
-				if (rhs == null) { // if rhs was not a literal, load it in
-					rhs = translate(bop.getRHS());
-					// cast to what we need (bool) before use
-					int toBoolR = bitCast(rhs, oBool);
-					String atBitR = "%" + getElementPtr("%"+toBoolR, oBool, 1);
-					rhs = "%" + load(atBitR, "i1", "1");
-				}
-				
-				String res = "%" + varNum++;
-				String opcode = (bothNeeded? "and" : "or");
-				lines.addLine(res, " = ", opcode, " i1 ", lhs, ", ", rhs);
-				// Lastly, we create a global that can receive this value
-				String lit = newObject(oBool, false);
-				String atLitVal = "%" + getElementPtr(lit, oBool, 1);
-				store(res, "i1", "1", atLitVal);
-				
-				return "%" + castVoidPtr(lit, oBool);
-			}
-			
-			// All operations from here take integers as inputs, though some return an integer
-			//  and others return boolean.
+		// If it was not one of those types, through an error
+		throw new RuntimeException("Expression " + e.toString() + " could not be translated!");
+	}
+	
+	/**
+	 * Translates the expression to the representation given: the value of an integer (i32) or
+	 * boolean (i1) for Int or Bool, or an object for null.
+	 */
+	protected String translate(Expression e, Type repr) {
+		if (repr == null)
+			return translate(e);
+		if (e instanceof Value)
+			return translate(((Value)e).getSubexpressions().get(0), repr);
+		if (e instanceof Literal)
+			return ((Literal)e).getToken().getValue();
+		// Without unboxing, every other value is found in an object
+		if (!unbox)
+			return unbox(translate(e), repr);
+		
+		if (e instanceof Block) {
+			List<Expression> body = ((Block)e).getBody();
+			for (int i = 0; i < body.size() - 1; i++)
+				translate(body.get(i));
+			return translate(body.get(body.size() - 1), repr);
+		}else if (e instanceof If) {
+			return translateIf((If)e, repr);
+		}else if (e instanceof Operation) {
 			Operation op = (Operation)e;
-			String rhs = null;
-			OutType oInt = outTypes.get(Type.Int);
-			List<Subexpression> opRhs = op.getRHS().getSubexpressions();
-			if (opRhs.size() == 1 && opRhs.get(0) instanceof Literal)
-				// We can optimize if it is an int literal by a direct output
-				rhs = ((Literal)opRhs.get(0)).getToken().getValue();
-			else {
-				rhs = translate(op.getRHS());
-				// cast to what we need (int) before use
-				int toInt = bitCast(rhs, oInt);
-				String atBitR = "%" + getElementPtr("%"+toInt, oInt, 1);
-				rhs = "%" + load(atBitR, "i32", "4");
+			return convert(operate(op), resultOf(op), repr);
+		}else if (e instanceof Reference) {
+			Reference ref = (Reference)e;
+			if (varNames.get(ref.getLinkedTo()) == null)
+				throw new RuntimeException("Reference \"" + ref.getVarName() + "\" encountered without a name in translation!");
+			if (ref.getArgument() != null)
+				return translateCall(ref, repr);
+			if (!ref.isMember() && repr.equals(raw.get(ref.getLinkedTo())))
+				return read(ref.getLinkedTo());
+		}
+		return unbox(translate(e), repr);
+	}
+	
+	/**
+	 * @return the value the variable holds at this point, which may be in a stack slot
+	 */
+	protected String read(Variable var) {
+		// The parameters of a looping function change with each pass
+		if (slots.containsKey(var))
+			return "%" + load(slots.get(var), irType(raw.get(var)), "8");
+		return varNames.get(var);
+	}
+	
+	protected String translateIf(If if_, Type repr) {
+		int num = ifNum++;
+		String tbranch = "then" + num;
+		String fbranch = "else" + num;
+		String next = "next" + num;
+		// We want to find the result of the condition, then jump from there
+		branch(if_.getCondition(), tbranch, fbranch);
+		
+		if (tails.contains(if_)) {
+			// Each branch returns its own value from the function, so there is nothing to join
+			lines.addLabel(tbranch);
+			String thenAt = translate(if_.getThen(), returning);
+			if (thenAt != null)
+				lines.addLine("ret ", irType(returning), " ", thenAt);
+			lines.addLabel(fbranch);
+			String elseAt = translate(if_.getElse(), returning);
+			if (elseAt != null)
+				lines.addLine("ret ", irType(returning), " ", elseAt);
+			return null;
+		}
+		// Each branch may end in a block other than the one it began in (such as for a nested
+		//  if), which is the predecessor the result is joined from
+		lines.addLabel(tbranch);
+		String thenAt = translate(if_.getThen(), repr);
+		String thenEnd = lines.getBlock();
+		lines.addLine("br label %", next);
+		
+		lines.addLabel(fbranch);
+		String elseAt = translate(if_.getElse(), repr);
+		String elseEnd = lines.getBlock();
+		lines.addLine("br label %", next);
+		
+		lines.addLabel(next);
+		String joined = "%" + varNum++;
+		lines.addLine(joined, " = phi ", irType(repr), " [ ", thenAt, ", %", thenEnd, " ], [ ", elseAt, ", %",
+				elseEnd, " ]");
+		return joined;
+	}
+	
+	/**
+	 * Jumps to one label or the other by the condition. A comparison is branched on directly,
+	 * and the operands of a not, and, or or are branched on in turn, so none of their results
+	 * is kept as a boolean (nor put in an object).
+	 */
+	protected void branch(Expression cond, String ifTrue, String ifFalse) {
+		if (cond instanceof Value) {
+			branch(((Value)cond).getSubexpressions().get(0), ifTrue, ifFalse);
+			return;
+		}
+		if (cond instanceof Operation.Not) {
+			branch(((Operation)cond).getRHS(), ifFalse, ifTrue);
+			return;
+		}
+		if (cond instanceof BinOp.And || cond instanceof BinOp.Or) {
+			// The right operand is only found if the left does not decide the result
+			BinOp bop = (BinOp)cond;
+			boolean and = cond instanceof BinOp.And;
+			String rhs = (and? "and" : "or") + ifNum++;
+			if (and)
+				branch(bop.getLHS(), rhs, ifFalse);
+			else
+				branch(bop.getLHS(), ifTrue, rhs);
+			lines.addLabel(rhs);
+			branch(bop.getRHS(), ifTrue, ifFalse);
+			return;
+		}
+		String value;
+		if (cond instanceof BinOp && Type.Bool.equals(resultOf((BinOp)cond)))
+			value = operate((BinOp)cond);
+		else
+			value = translate(cond, Type.Bool);
+		lines.addLine("br i1 ", value, ", label %", ifTrue, ", label %", ifFalse);
+	}
+	
+	/**
+	 * Translates the call, giving its result in the representation given (or null if it was
+	 * returned from the function already).
+	 */
+	protected String translateCall(Reference ref, Type repr) {
+		Variable fx = ref.getLinkedTo();
+		Value[] args = argsOf(ref);
+		// Functions take integers and booleans as values. Others (such as methods) take objects.
+		Type[] reprs = paramReprs(fx);
+		Type[] argReprs = new Type[args.length];
+		for (int i=0; reprs != null && i<args.length && i<reprs.length; i++)
+			argReprs[i] = reprs[i];
+		Type returned = returnRepr(fx);
+		
+		String[] argsAt = new String[args.length];
+		for (int i=0; i<args.length; i++)
+			argsAt[i] = translate(args[i], argReprs[i]);
+		
+		boolean tail = tails.contains(ref);
+		if (tail && isSelfCall(ref, looping)) {
+			// Every argument is found before any parameter is replaced
+			List<Parameter> params = ((Assignment)looping.getSource()).getParamList();
+			for (int i=0; i<args.length; i++)
+				store(argsAt[i], irType(argReprs[i]), "8", slots.get(params.get(i).getSourced()));
+			lines.addLine("br label %loop");
+			return null;
+		}
+		// The result can only be returned as it is if it is what the caller returns
+		tail = tail && Objects.equals(returned, repr);
+		
+		// The function is found first, since it may be loaded from a vtable
+		String called = callee(fx, ref.isMember()? ref.getMemberData().receiver : null, argsAt);
+		int result = varNum++;
+		String[] callComps = new String[6 + 2*args.length];
+		callComps[0] = "%";
+		callComps[1] = Integer.toString(result);
+		// A call whose value is returned need not keep the frame of its caller. It must not,
+		//  if the two have the same signature.
+		if (!tail)
+			callComps[2] = " = call ";
+		else if (signature(returned, argReprs).equals(tailSignature))
+			callComps[2] = " = musttail call ";
+		else
+			callComps[2] = " = tail call ";
+		callComps[2] += irType(returned) + " ";
+		callComps[3] = called;
+		callComps[4] = "(";
+		int j = 5;
+		for (int i=0; i<args.length; i++) {
+			callComps[j++] = ((i == 0)? "" : ", ") + irType(argReprs[i]) + " ";
+			callComps[j++] = argsAt[i];
+		}
+		callComps[j] = ")";
+		lines.addLine(callComps);
+		if (tail) {
+			lines.addLine("ret ", irType(returned), " %" + result);
+			return null;
+		}
+		return convert("%" + result, returned, repr);
+	}
+	
+	/**
+	 * Translates the operation to the value of its result: an integer for arithmetic, and a
+	 * boolean for anything else.
+	 */
+	protected String operate(Operation op) {
+		String result;
+		// Handle all operations that require boolean inputs (true or false)
+		//  These operations are "NOT" and the boolean (2 operands) "AND" and "OR".
+		if (op instanceof Operation.Not) {
+			String rhs = translate(op.getRHS(), Type.Bool);
+			result = "%" + varNum++;
+			lines.addLine(result, " = xor i1 ", rhs, ", true");
+			return result;
+		}else if (op instanceof Operation.Negation) {
+			// negation is the same as subtracting from 0
+			String rhs = translate(op.getRHS(), Type.Int);
+			result = "%" + varNum++;
+			lines.addLine(result, " = sub nsw i32 0, ", rhs);
+			return result;
+		}
+		BinOp bop = (BinOp)op;
+		if (op instanceof BinOp.And || op instanceof BinOp.Or) {
+			// The right operand is skipped where the left decides, so the result is joined from
+			//  the branches taken
+			int num = ifNum++;
+			String ifTrue = "true" + num;
+			String ifFalse = "false" + num;
+			String next = "join" + num;
+			branch(op, ifTrue, ifFalse);
+			lines.addLabel(ifTrue);
+			lines.addLine("br label %", next);
+			lines.addLabel(ifFalse);
+			lines.addLine("br label %", next);
+			lines.addLabel(next);
+			result = "%" + varNum++;
+			lines.addLine(result, " = phi i1 [ true, %", ifTrue, " ], [ false, %", ifFalse, " ]");
+			return result;
+		}
+		
+		// All operations from here take integers as inputs, though some return an integer
+		//  and others return boolean.
+		String lhs = translate(bop.getLHS(), Type.Int);
+		String rhs = translate(bop.getRHS(), Type.Int);
+		String operation;
+		if (op instanceof BinOp.Addition)
+			operation = "add nsw";
+		else if (op instanceof BinOp.Subtraction)
+			operation = "sub nsw";
+		else if (op instanceof BinOp.Multiplication)
+			operation = "mul nsw";
+		else if (op instanceof BinOp.Division)
+			operation = "sdiv";
+		else if (op instanceof BinOp.Modulus)
+			operation = "srem";
+		else if (op instanceof BinOp.Equal)
+			operation = "icmp eq";
+		else if (op instanceof BinOp.NEqual)
+			operation = "icmp ne";
+		else if (op instanceof BinOp.LessThan)
+			operation = "icmp slt";
+		else if (op instanceof BinOp.LessEqual)
+			operation = "icmp sle";
+		else if (op instanceof BinOp.GreaterThan)
+			operation = "icmp sgt";
+		else if (op instanceof BinOp.GreaterEqual)
+			operation = "icmp sge";
+		else
+			throw new RuntimeException("Unknown operation: " + op + " which cannot be translated!");
+		result = "%" + varNum++;
+		lines.addLine(result, " = ", operation, " i32 ", lhs, ", ", rhs);
+		return result;
+	}
+	
+	/**
+	 * @return the type of the result of the operation: Int for arithmetic, or else Bool
+	 */
+	protected Type resultOf(Operation op) {
+		if (op instanceof Operation.Negation || op instanceof BinOp.Addition ||
+				op instanceof BinOp.Subtraction || op instanceof BinOp.Multiplication ||
+				op instanceof BinOp.Division || op instanceof BinOp.Modulus)
+			return Type.Int;
+		return Type.Bool;
+	}
+	
+	/**
+	 * Decides how a value of the type is held: as an integer (Int) or boolean (Bool) value, or
+	 * as an object (null). Only types known exactly may be values, since the object of a
+	 * descendant could not be recovered from its value.
+	 */
+	protected Type reprOf(Type type) {
+		if (!unbox || type == null)
+			return null;
+		if (Type.Int.equals(type) && exact.contains(Type.Int))
+			return Type.Int;
+		if (Type.Bool.equals(type) && exact.contains(Type.Bool))
+			return Type.Bool;
+		return null;
+	}
+	
+	/**
+	 * @return how each parameter of the function is held, or null if it is not a function
+	 * (such as a method or constructor, which take only objects)
+	 */
+	protected Type[] paramReprs(Variable fx) {
+		if (!(fx.getSource() instanceof Assignment))
+			return null;
+		Assignment asgn = (Assignment)fx.getSource();
+		if (asgn.getParamList() == null || asgn.getPath() != null)
+			return null;
+		Type[] reprs = new Type[asgn.getParamList().size()];
+		for (int i = 0; i < reprs.length; i++)
+			reprs[i] = reprOf(asgn.getParamList().get(i).getSourced().getType());
+		return reprs;
+	}
+	protected Type returnRepr(Variable fx) {
+		if (paramReprs(fx) == null)
+			return null;
+		return reprOf(fx.getType().getOutput());
+	}
+	
+	protected String signature(Type returned, Type[] params) {
+		StringBuffer sig = new StringBuffer(irType(returned));
+		sig.append('(');
+		for (int i = 0; i < params.length; i++)
+			sig.append((i == 0)? "" : ",").append(irType(params[i]));
+		return sig.append(')').toString();
+	}
+	
+	protected String irType(Type repr) {
+		if (repr == null)
+			return voidPtr;
+		return repr.equals(Type.Int)? "i32" : "i1";
+	}
+	
+	/**
+	 * Changes the representation of the value from one to the other.
+	 */
+	protected String convert(String value, Type from, Type to) {
+		if (Objects.equals(from, to))
+			return value;
+		if (from != null)
+			value = box(value, from);
+		return (to == null)? value : unbox(value, to);
+	}
+	
+	/**
+	 * Puts the value in a new object of its type. A constant is put in a global instead.
+	 */
+	protected String box(String value, Type repr) {
+		if (!value.startsWith("%")) {
+			Token.Type kind = repr.equals(Type.Int)? Token.Type.NUMBER :
+				(value.equals("true")? Token.Type.TRUE : Token.Type.FALSE);
+			return setGlobalLiteral(new GlobalLiteral(kind, value), true);
+		}
+		OutType oType = outTypes.get(repr);
+		String obj = newObject(oType, false);
+		String at = "%" + getElementPtr(obj, oType, 1);
+		store(value, irType(repr), repr.equals(Type.Int)? "4" : "1", at);
+		return "%" + castVoidPtr(obj, oType);
+	}
+	
+	/**
+	 * Finds the value in the object given.
+	 */
+	protected String unbox(String obj, Type repr) {
+		OutType oType = outTypes.get(repr);
+		// If the type has descendants, the object may be one, so it must be found as its ancestor
+		if (!exact.contains(repr))
+			obj = callSuper(obj, repr);
+		else
+			count("upcasts removed");
+		int casted = bitCast(obj, oType);
+		String at = "%" + getElementPtr("%" + casted, oType, 1);
+		return "%" + load(at, irType(repr), repr.equals(Type.Int)? "4" : "1");
+	}
+	
+	/**
+	 * Finds the expressions in the value given whose values are returned as the value of the
+	 * function, which are added to the tails.
+	 * @param fx the function, or null if calls to itself cannot loop
+	 * @return whether any of them is a call of the function to itself
+	 */
+	protected boolean findTails(Expression e, Variable fx) {
+		tails.add(e);
+		if (e instanceof Value)
+			return findTails(((Value)e).getSubexpressions().get(0), fx);
+		else if (e instanceof Block) {
+			List<Expression> body = ((Block)e).getBody();
+			return findTails(body.get(body.size() - 1), fx);
+		}else if (e instanceof If) {
+			If if_ = (If)e;
+			boolean inThen = findTails(if_.getThen(), fx);
+			return findTails(if_.getElse(), fx) || inThen;
+		}else if (e instanceof Reference)
+			return isSelfCall((Reference)e, fx);
+		return false;
+	}
+	
+	protected boolean isSelfCall(Reference ref, Variable fx) {
+		if (fx == null || ref.getLinkedTo() != fx || ref.getArgument() == null || ref.isMember())
+			return false;
+		// A call which leaves out an implicit parameter cannot give it again
+		return argsOf(ref).length == ((Assignment)fx.getSource()).getParamList().size();
+	}
+	
+	protected Value[] argsOf(Reference ref) {
+		Value argument = ref.getArgument();
+		if (argument.getSubexpressions().get(0) instanceof Tuple) {
+			Tuple ls = (Tuple)argument.getSubexpressions().get(0);
+			return ls.getArgs().toArray(new Value[] {});
+		}
+		return new Value[] {argument};
+	}
+	
+	/**
+	 * Decides whether the function may save its results, which is when it calls itself, and it
+	 * takes only integers and booleans (which are used as the key to its results).
+	 */
+	protected boolean isMemoizable(Assignment fx) {
+		if (fx.getParamList().isEmpty())
+			return false;
+		for (Parameter param: fx.getParamList()) {
+			Type type = param.getSourced().getType();
+			if (!Type.Int.equals(type) && !Type.Bool.equals(type))
+				return false;
+		}
+		return calls(fx.getValue(), fx.getSourced());
+	}
+	
+	protected boolean calls(Expression e, Variable fx) {
+		if (e instanceof Value) {
+			for (Subexpression sub: ((Value)e).getSubexpressions()) {
+				if (calls(sub, fx))
+					return true;
 			}
-			
-			String operation = null;
-			String lhs = null;
-			if (op instanceof Operation.Negation) {
-				operation = "sub nsw";
-				lhs = "0"; // negation is the same as subtracting from 0
-			}else {
-				BinOp bop = (BinOp)op;
-				// We can set up lhs, since it should be a number for all operations here
-				List<Subexpression> opLhs = bop.getLHS().getSubexpressions();
-				if (opLhs.size() == 1 && opLhs.get(0) instanceof Literal)
-					// We can optimize if it is an int literal by a direct output
-					lhs = ((Literal)opLhs.get(0)).getToken().getValue();
-				else {
-					lhs = translate(bop.getLHS());
-					// cast to what we need (int) before use
-					int toInt = bitCast(lhs, oInt);
-					String atBit = "%" + getElementPtr("%"+toInt, oInt, 1);
-					lhs = "%" + load(atBit, "i32", "4");
-				}
+		}else if (e instanceof Reference) {
+			Reference ref = (Reference)e;
+			if (ref.getLinkedTo() == fx && ref.getArgument() != null)
+				return true;
+			if (ref.getArgument() != null && calls(ref.getArgument(), fx))
+				return true;
+			return ref.isMember() && calls(ref.getMemberData().location, fx);
+		}else if (e instanceof Operation) {
+			Operation op = (Operation)e;
+			return calls(op.getRHS(), fx) || (op instanceof BinOp && calls(((BinOp)op).getLHS(), fx));
+		}else if (e instanceof If) {
+			If if_ = (If)e;
+			return calls(if_.getCondition(), fx) || calls(if_.getThen(), fx) || calls(if_.getElse(), fx);
+		}else if (e instanceof Block) {
+			for (Expression be: ((Block)e).getBody()) {
+				if (be instanceof Assignment ? calls(((Assignment)be).getValue(), fx) : calls(be, fx))
+					return true;
 			}
-			
-			// First try to process all operations that will return a number
-			boolean returnsNumber = true;
-			if (operation == null) {
-				if (op instanceof BinOp.Addition) {
-					operation = "add nsw";
-					// x + 0 = 0 + x = x
-					if (lhs.equals("0") && rhs.startsWith("%"))
-						return rhs;
-					if (rhs.equals("0") && lhs.startsWith("%"))
-						return lhs;
-				}else if (op instanceof BinOp.Subtraction) {
-					operation = "sub nsw";
-					// x - 0 = x
-					if (rhs.equals("0") && lhs.startsWith("%"))
-						return lhs;
-				}else if (op instanceof BinOp.Multiplication) {
-					operation = "mul nsw";
-					// x * 1 = 1 * x = x
-					if (lhs.equals("1") && rhs.startsWith("%"))
-						return rhs;
-					if (rhs.equals("1") && lhs.startsWith("%"))
-						return lhs;
-				}else if (op instanceof BinOp.Division) {
-					operation = "sdiv";
-					// x / 1 = x
-					if (rhs.equals("1") && lhs.startsWith("%"))
-						return lhs;
-				}else if (op instanceof BinOp.Modulus) {
-					operation = "srem";
-				}else {
-					returnsNumber = false;
-					if (op instanceof BinOp.Equal)
-						operation = "eq";
-					else if (op instanceof BinOp.NEqual)
-						operation = "ne";
-					else if (op instanceof BinOp.LessThan)
-						operation = "slt";
-					else if (op instanceof BinOp.LessEqual)
-						operation = "sle";
-					else if (op instanceof BinOp.GreaterThan)
-						operation = "sgt";
-					else if (op instanceof BinOp.GreaterEqual)
-						operation = "sge";
-					else
-						throw new RuntimeException("Unknown operation: " + op +
-								" which cannot be translated!");
-					operation = "icmp " + operation;
-				}
+		}else if (e instanceof Tuple) {
+			for (Value arg: ((Tuple)e).getArgs()) {
+				if (calls(arg, fx))
+					return true;
 			}
-			String result = "%" + varNum++;
-			lines.addLine(result, " = ", operation, " i32 ", lhs, ", ", rhs);
-			
-			if (returnsNumber) {
-				// Code for all operations that will return a number
-				// Now we can create a literal for holding numbers and return it
-				String lit = newObject(oInt, false);
-				String atNum = "%" + getElementPtr(lit, oInt, 1);
-				store(result, "i32", "4", atNum);
-				return "%" + castVoidPtr(lit, oInt);
-			}else {
-				// Code for all operations that will return a bool
-				// Now we can create a literal for holding numbers and return it
-				OutType oBool = outTypes.get(Type.Bool);
-				String lit = newObject(oBool, false);
-				String atBool = "%" + getElementPtr(lit, oBool, 1);
-				store(result, "i1", "1", atBool);
-				return "%" + castVoidPtr(lit, oBool);
+		}
+		return false;
+	}
+	
+	/**
+	 * Defines the function as a lookup in a table of its results, by the values of its
+	 * arguments. Only for arguments not seen before is its body called, and the result saved.
+	 * @param decl the components of the line which declares the function
+	 * @param reprs how each parameter is held
+	 * @param returned how the result is held
+	 */
+	protected void memoize(Assignment fx, String[] decl, Type[] reprs, Type returned) {
+		if (!memoLoaded) {
+			memoLoaded = true;
+			loadLibrary("Memo.ll");
+		}
+		String name = decl[1];
+		List<Parameter> params = fx.getParamList();
+		String table = "@" + name + ".memo";
+		lines.addLine(table, " = internal global %..Memo { i32 " + params.size(),
+				", i32 0, i32 0, i32* null, i8** null }");
+		lines.addLine(decl);
+		lines.deltaIndent(1);
+		beginFunction();
+		
+		// The key is the value in each argument, as found in its integer or boolean ancestor
+		String keyType = "[" + params.size() + " x i32]";
+		String keys = "%" + allocate(keyType, "4");
+		String first = null;
+		StringBuffer args = new StringBuffer();
+		for (int i = 0; i < params.size(); i++) {
+			String arg = varNames.get(params.get(i).getSourced());
+			args.append((i == 0)? "" : ", ").append(irType(reprs[i])).append(' ').append(arg);
+			Type type = params.get(i).getSourced().getType();
+			String value = (reprs[i] != null)? arg : unbox(arg, type);
+			if (!type.equals(Type.Int)) {
+				String bit = value;
+				value = "%" + varNum++;
+				lines.addLine(value, " = zext i1 ", bit, " to i32");
 			}
+			String keyAt = "%" + varNum++;
+			lines.addLine(keyAt, " = getelementptr inbounds ", keyType, ", ", keyType, "* ", keys,
+					", i32 0, i32 " + i);
+			store(value, "i32", "4", keyAt);
+			if (first == null)
+				first = keyAt;
 		}
-		// If it was not one of those types, through an error
-		throw new RuntimeException("Expression " + e.toString() + " could not be translated!");
+		
+		// The table keeps objects, so a result held as a value is put in one to be saved
+		String saved = "%" + varNum++;
+		lines.addLine(saved, " = call ", voidPtr, " @..memoFind(%..Memo* ", table, ", i32* ", first, ")");
+		String found = "%" + varNum++;
+		lines.addLine(found, " = icmp ne ", voidPtr, " ", saved, ", null");
+		lines.addLine("br i1 ", found, ", label %saved, label %unsaved");
+		lines.addLabel("saved");
+		lines.addLine("ret ", irType(returned), " ", convert(saved, null, returned));
+		lines.addLabel("unsaved");
+		String result = "%" + varNum++;
+		lines.addLine(result, " = call ", irType(returned), " @", name, ".body(", args.toString(), ")");
+		lines.addLine("call void @..memoPut(%..Memo* ", table, ", i32* ", first, ", ", voidPtr, " ",
+				convert(result, returned, null), ")");
+		lines.addLine("ret ", irType(returned), " ", result);
+		lines.deltaIndent(-1);
+		lines.addLine("}");
 	}
 	
 	protected String constructObj(OutType type, String fromGlobal) {
@@ -1001,6 +1559,24 @@ public class Translator {
 		return retAt;
 	}
 	
+	/**
+	 * A literal for a value known to the translation, but not written in the program.
+	 */
+	protected static class GlobalLiteral extends Literal {
+		public GlobalLiteral(Token.Type type, String value) {
+			super(null);
+			this.startToken = new Token(value, type, -1, -1);
+		}
+	}
+	
+	/**
+	 * @return the number of upcasts which needed a call to @..super ("upcasts kept"), and which
+	 * were translated without one ("upcasts removed")
+	 */
+	public Map<String, Integer> getStats() {
+		return stats;
+	}
+	
 	public List<String> getOutLines() {
 		return lines.getOutLines();
 	}
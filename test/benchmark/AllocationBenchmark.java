@@ -0,0 +1,141 @@
+package benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import classy.compiler.Classy;
+
+/**
+ * Counts the objects allocated by programs when integers and booleans are kept in objects (as
+ * without optimization), and when they are kept as values, and measures how long each runs.
+ * Allocations are counted by a malloc which wraps the one from libc, preloaded into the program.
+ * <p>
+ * Must be run from the root of the project, with llc and gcc on the path.
+ * Run with: java benchmark.AllocationBenchmark
+ */
+public class AllocationBenchmark {
+
+	protected static final Map<String, List<String>> PROGRAMS = Map.of(
+		"fib", List.of(
+			"let fib(n) = if n < 2",
+			"	n",
+			"else",
+			"	fib(n - 1) + fib(n - 2)",
+			"fib 27"
+		),
+		"count", List.of(
+			"let count(n, acc) = if n == 0",
+			"	acc",
+			"else",
+			"	count(n - 1, acc + 2)",
+			"count(1000000, 0)"
+		),
+		"collatz", List.of(
+			"let total(i, sum) = {",
+			"	let steps(n, acc) = if n == 1",
+			"		acc",
+			"	else",
+			"		if n % 2 == 0",
+			"			steps(n / 2, acc + 1)",
+			"		else",
+			"			steps(3 * n + 1, acc + 1)",
+			"	if i == 0",
+			"		sum",
+			"	else",
+			"		total(i - 1, sum + steps(i, 0))",
+			"}",
+			"total(30000, 0)"
+		),
+		"points", List.of(
+			"type Point = (x: Int, y: Int)",
+			"let walk(p: Point, n) = if n == 0",
+			"	p.x + p.y",
+			"else",
+			"	walk(Point(p.x + 1, p.y + 2), n - 1)",
+			"walk(Point(0, 0), 100000)"
+		)
+	);
+
+	protected static final List<String> COUNTER = List.of(
+		"#define _GNU_SOURCE",
+		"#include <dlfcn.h>",
+		"#include <stdio.h>",
+		"static long count = 0;",
+		"static void *(*real)(size_t) = 0;",
+		"void *malloc(size_t n) {",
+		"	if (!real)",
+		"		real = dlsym(RTLD_NEXT, \"malloc\");",
+		"	count++;",
+		"	return real(n);",
+		"}",
+		"__attribute__((destructor)) static void report(void) {",
+		"	fprintf(stderr, \"%ld\\n\", count);",
+		"}"
+	);
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		File counter = buildCounter();
+		for (String name: new String[] {"fib", "count", "collatz", "points"}) {
+			// The calls are left for runtime, rather than evaluated as the program is compiled
+			Map<String, String> flags = new HashMap<>();
+			flags.put(Classy.EVAL, "0");
+			flags.put(Classy.BOXED, null);
+			long[] boxed = measure(name, PROGRAMS.get(name), flags, counter);
+			flags.remove(Classy.BOXED);
+			long[] unboxed = measure(name, PROGRAMS.get(name), flags, counter);
+			System.out.printf("%-8s boxed: %10d allocations %8.1f ms, unboxed: %10d allocations %8.1f ms%n",
+					name, boxed[0], boxed[1] / 1e6, unboxed[0], unboxed[1] / 1e6);
+		}
+		counter.delete();
+	}
+
+	protected static File buildCounter() throws IOException, InterruptedException {
+		File source = new File("bench-malloc.c");
+		try (FileWriter fw = new FileWriter(source)) {
+			for (String line: COUNTER)
+				fw.write(line + "\n");
+		}
+		File lib = new File("bench-malloc.so").getAbsoluteFile();
+		Process gcc = new ProcessBuilder("gcc", "-shared", "-fPIC", "-o", lib.getPath(), source.getPath(),
+				"-ldl").inheritIO().start();
+		if (gcc.waitFor() != 0)
+			throw new RuntimeException("Could not build the allocation counter!");
+		source.delete();
+		return lib;
+	}
+
+	/**
+	 * Compiles the program with the flags given, then counts its allocations in one run, and
+	 * finds the best time of several runs without counting.
+	 * @return the number of allocations, and the time in nanoseconds
+	 */
+	protected static long[] measure(String name, List<String> program, Map<String, String> flags, File counter)
+			throws IOException, InterruptedException {
+		String binary = "bench-" + name;
+		new Classy(binary, program, flags);
+		ProcessBuilder counted = new ProcessBuilder("./" + binary);
+		counted.environment().put("LD_PRELOAD", counter.getPath());
+		Process p = counted.start();
+		p.getInputStream().readAllBytes();
+		String count = new String(p.getErrorStream().readAllBytes()).trim();
+		if (p.waitFor() != 0)
+			throw new RuntimeException(binary + " failed!");
+
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 3; i++) {
+			long start = System.nanoTime();
+			p = new ProcessBuilder("./" + binary).redirectErrorStream(true).start();
+			p.getInputStream().readAllBytes();
+			if (p.waitFor() != 0)
+				throw new RuntimeException(binary + " failed!");
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		new File(binary).delete();
+		return new long[] {Long.parseLong(count), best};
+	}
+
+}
@@ -0,0 +1,58 @@
+package benchmark;
+
+import classy.compiler.analyzing.Checker;
+import classy.compiler.lexing.TableLexer;
+import classy.compiler.lexing.TokenStream;
+import classy.compiler.parsing.Parser;
+import classy.compiler.parsing.Value;
+
+/**
+ * Measures how checking scales with the number of terms in one arithmetic expression, up to
+ * 10,000 terms. Most of the time should go to grouping the operations by precedence, which
+ * ought to take linear time.
+ * <p>
+ * Run with: java benchmark.CheckerBenchmark
+ */
+public class CheckerBenchmark {
+
+	public static void main(String[] args) throws InterruptedException {
+		// Checking the grouped expression recurses for each operation
+		Thread run = new Thread(null, CheckerBenchmark::run, "benchmark", 1L << 30);
+		run.start();
+		run.join();
+	}
+
+	protected static void run() {
+		for (int terms: new int[] {100, 1_000, 10_000}) {
+			TokenStream tokens = new TableLexer(makeSource(terms)).getTokenStream();
+			// Checking groups the program in place, so each run must parse it anew
+			long deadline = System.nanoTime() + 1_000_000_000L;
+			while (System.nanoTime() < deadline)
+				new Checker(new Parser(tokens).getProgram());
+			int runs = 0;
+			long elapsed = 0;
+			do {
+				Value program = new Parser(tokens).getProgram();
+				long start = System.nanoTime();
+				new Checker(program);
+				elapsed += System.nanoTime() - start;
+				runs++;
+			}while (elapsed < 2_000_000_000L);
+			double micros = elapsed / 1e3 / runs;
+			System.out.printf("%6d terms: %12.1f us per check, %8.3f us per term%n",
+					terms, micros, micros / terms);
+		}
+	}
+
+	protected static String makeSource(int terms) {
+		String[] ops = {" + ", " * ", " - ", " / ", " % ", " * "};
+		StringBuilder source = new StringBuilder("let x = 1");
+		for (int i = 1; i < terms; i++) {
+			source.append(ops[i % ops.length]);
+			source.append(1 + i % 7);
+		}
+		source.append("\nx\n");
+		return source.toString();
+	}
+
+}
@@ -0,0 +1,81 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import classy.compiler.Classy;
+
+/**
+ * Measures the cost of dynamic dispatch. A loop calls a method on each of 20 objects in turn,
+ * each of a different type with its own override, so every call may select any of 20
+ * implementations. The same loop is measured where every object is of one type, so the call
+ * can only select one implementation and is made directly.
+ * <p>
+ * Must be run from the root of the project, with llc and gcc on the path.
+ * Run with: java benchmark.DispatchBenchmark
+ */
+public class DispatchBenchmark {
+
+	protected static final int WAYS = 20;
+	protected static final int CALLS = 10_000_000;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		double poly = time("poly", program(true));
+		double mono = time("mono", program(false));
+		System.out.printf("%d calls: %d-way %8.1f ms, 1-way %8.1f ms%n", CALLS, WAYS, poly, mono);
+	}
+
+	/**
+	 * Creates the program, which rotates the objects through the parameters of a loop, calling
+	 * the method of the first each time.
+	 * @param polymorphic whether each object is of a different type, rather than all of the first
+	 */
+	protected static List<String> program(boolean polymorphic) {
+		List<String> lines = new ArrayList<>();
+		lines.add("type Shape = n: Int");
+		for (int i = 1; i < WAYS; i++)
+			lines.add("type S" + i + " isa Shape = void");
+		lines.add("let Shape.f() = 0");
+		for (int i = 1; i < WAYS; i++)
+			lines.add("let S" + i + ".f() = " + i);
+
+		StringBuilder params = new StringBuilder();
+		StringBuilder rotated = new StringBuilder();
+		StringBuilder objects = new StringBuilder();
+		for (int i = 0; i < WAYS; i++) {
+			params.append("s" + i + ": Shape, ");
+			rotated.append("s" + ((i + 1) % WAYS) + ", ");
+			objects.append((polymorphic && i > 0)? "S" + i + "(Shape " + i + "), " : "Shape " + i + ", ");
+		}
+		lines.add("let run(" + params + "i, acc) = if i == 0");
+		lines.add("	acc");
+		lines.add("else");
+		lines.add("	run(" + rotated + "i - 1, acc + s0.f())");
+		lines.add("run(" + objects + CALLS + ", 0)");
+		return lines;
+	}
+
+	/**
+	 * Compiles the program, and finds the best time of several runs.
+	 * @return the time in milliseconds
+	 */
+	protected static double time(String name, List<String> program) throws IOException, InterruptedException {
+		String binary = "bench-" + name;
+		new Classy(binary, program, new HashMap<>());
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 3; i++) {
+			long start = System.nanoTime();
+			Process p = new ProcessBuilder("./" + binary).redirectErrorStream(true).start();
+			p.getInputStream().readAllBytes();
+			if (p.waitFor() != 0)
+				throw new RuntimeException(binary + " failed!");
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		new File(binary).delete();
+		return best / 1e6;
+	}
+
+}
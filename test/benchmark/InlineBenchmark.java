@@ -0,0 +1,86 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import classy.compiler.Classy;
+
+/**
+ * Measures how long programs take to run when compiled with and without inlining. Each program
+ * calls small helper functions from a recursive function, so without inlining, most of its
+ * time goes to the calls (and the boxed arguments passed to them).
+ * <p>
+ * Must be run from the root of the project, with llc and gcc on the path.
+ * Run with: java benchmark.InlineBenchmark
+ */
+public class InlineBenchmark {
+
+	protected static final List<String> FIB = List.of(
+		"let fib(n) = {",
+		"	let lt(a, b) = a < b",
+		"	let add(a, b) = a + b",
+		"	let dec(a, by = 1) = a - by",
+		"	if lt(n, 2)",
+		"		n",
+		"	else",
+		"		add(fib(dec n), fib(dec(n, 2)))",
+		"}",
+		"fib 27"
+	);
+	protected static final List<String> SUM = List.of(
+		"let sum(n) = {",
+		"	let divides(x, by) = x % by == 0",
+		"	let pick(x) = if (x % 3 == 0) | (x % 5 == 0)",
+		"		x * x",
+		"	else",
+		"		x",
+		"	if n <= 0",
+		"		0",
+		"	else if divides(n, 7)",
+		"		sum(n - 1) + sum(n - 2) - sum(n - 2)",
+		"	else",
+		"		pick(n) + sum(n - 1) + sum(n - 2) - sum(n - 2)",
+		"}",
+		"sum 21"
+	);
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		run("fib", FIB);
+		run("sum", SUM);
+	}
+
+	protected static void run(String name, List<String> program) throws IOException, InterruptedException {
+		Map<String, String> flags = new HashMap<>();
+		flags.put(Classy.INLINE, "0");
+		double without = time(name, program, flags);
+		flags.clear();
+		double with = time(name, program, flags);
+		System.out.printf("%-4s %10.1f ms without inlining, %10.1f ms with, %5.2fx speedup%n",
+				name, without, with, without / with);
+	}
+
+	/**
+	 * Compiles the program with the flags given, and finds the best time of several runs.
+	 * @return the time in milliseconds
+	 */
+	protected static double time(String name, List<String> program, Map<String, String> flags)
+			throws IOException, InterruptedException {
+		String binary = "bench-" + name;
+		new Classy(binary, program, flags);
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 7; i++) {
+			long start = System.nanoTime();
+			Process p = new ProcessBuilder("./" + binary).redirectErrorStream(true).start();
+			p.getInputStream().readAllBytes();
+			if (p.waitFor() != 0)
+				throw new RuntimeException(binary + " failed!");
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		new File(binary).delete();
+		return best / 1e6;
+	}
+
+}
@@ -0,0 +1,123 @@
+package benchmark;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import classy.compiler.lexing.ByteSource;
+import classy.compiler.lexing.Lexer;
+import classy.compiler.lexing.TableLexer;
+
+/**
+ * Measures the throughput (in MB/s of source) of the processor chain {@link Lexer} against
+ * the {@link TableLexer}. Generated sources tend to have very long lines, which is where the
+ * processor chain suffers most, so both short and long line sources are timed. Reading the
+ * source bytes is timed too, both through a {@link Scanner} and as a {@link ByteSource}.
+ * <p>
+ * Run with: java benchmark.LexerBenchmark [megabytes]
+ */
+public class LexerBenchmark {
+
+	public static void main(String[] args) {
+		double megabytes = args.length > 0? Double.parseDouble(args[0]) : 2;
+		for (int lineLength: new int[] {80, 2_000, 20_000}) {
+			List<String> lines = makeSource((int)(megabytes * 1024 * 1024), lineLength);
+			long bytes = 0;
+			for (String line: lines)
+				bytes += line.length() + 1;
+			System.out.println("Lines of ~" + lineLength + " characters (" + bytes + " bytes):");
+			// The processor chain is quadratic in the line length, so we give it less to do
+			if (lineLength <= 2_000)
+				report("  processor chain", bytes, () -> new Lexer(lines));
+			report("  table", bytes, () -> new TableLexer(lines, true));
+			report("  table, cleaned", bytes, () -> new TableLexer(lines));
+
+			// The whole pipeline from raw bytes, either split into lines by a Scanner or not
+			ByteBuffer raw = ByteBuffer.allocateDirect((int)bytes);
+			for (String line: lines) {
+				raw.put(line.getBytes(StandardCharsets.US_ASCII));
+				raw.put((byte)'\n');
+			}
+			raw.flip();
+			report("  scanner lines + table", bytes, () -> {
+				List<String> read = new ArrayList<>();
+				Scanner scan = new Scanner(new ByteBufferInput(raw.duplicate()));
+				while (scan.hasNextLine())
+					read.add(scan.nextLine());
+				scan.close();
+				new TableLexer(read);
+			});
+			report("  byte source + table", bytes, () -> new TableLexer(ByteSource.of(raw.duplicate())));
+		}
+	}
+
+	protected static List<String> makeSource(int size, int lineLength) {
+		String[] pieces = {"let ", "value", "_", "12", " = ", "(", "a1 + 3.5", ")", " * ", "-4", ", ",
+				"foo(x, y)", " <= ", "if ", "true", " & ", "!", "bar.baz", "\t"};
+		List<String> lines = new ArrayList<>();
+		StringBuilder line = new StringBuilder();
+		int total = 0;
+		int piece = 0;
+		while (total < size) {
+			String next = pieces[piece++ % pieces.length];
+			line.append(next);
+			total += next.length();
+			if (line.length() >= lineLength) {
+				// finish the line with a comment so that the parentheses always balance out
+				line.append(" # end");
+				lines.add(line.toString());
+				total += 6;
+				line.setLength(0);
+				piece = 0;
+			}
+		}
+		lines.add(line.toString());
+		return lines;
+	}
+
+	/**
+	 * Reads a buffer as a stream, which is what the Scanner would get from a file.
+	 */
+	protected static class ByteBufferInput extends InputStream {
+		protected ByteBuffer buffer;
+
+		public ByteBufferInput(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining()? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining())
+				return -1;
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+	}
+
+	protected static void report(String name, long bytes, Runnable lex) {
+		// warm up before any measurement
+		long deadline = System.nanoTime() + 2_000_000_000L;
+		while (System.nanoTime() < deadline)
+			lex.run();
+		int runs = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			lex.run();
+			runs++;
+			elapsed = System.nanoTime() - start;
+		}while (elapsed < 3_000_000_000L);
+		double seconds = elapsed / 1e9 / runs;
+		System.out.printf("%s: %.2f MB/s%n", name, bytes / seconds / (1024 * 1024));
+	}
+
+}
@@ -0,0 +1,59 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import classy.compiler.Classy;
+
+/**
+ * Measures how long the naive fib 35 takes to run when compiled with and without memoization.
+ * Without it, each call recomputes both of its subcalls, so the time grows exponentially with
+ * n. With it, each call after the first for its argument is a lookup.
+ * <p>
+ * Must be run from the root of the project, with llc and gcc on the path.
+ * Run with: java benchmark.MemoBenchmark
+ */
+public class MemoBenchmark {
+
+	protected static final List<String> FIB = List.of(
+		"let fib(n) = if n < 2",
+		"	n",
+		"else",
+		"	fib(n - 1) + fib(n - 2)",
+		"fib 35"
+	);
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Map<String, String> flags = new HashMap<>();
+		double without = time("fib", FIB, flags);
+		flags.put(Classy.MEMO, null);
+		double with = time("fib", FIB, flags);
+		System.out.printf("fib 35 %10.1f ms without memoization, %10.1f ms with, %8.1fx speedup%n",
+				without, with, without / with);
+	}
+
+	/**
+	 * Compiles the program with the flags given, and finds the best time of several runs.
+	 * @return the time in milliseconds
+	 */
+	protected static double time(String name, List<String> program, Map<String, String> flags)
+			throws IOException, InterruptedException {
+		String binary = "bench-" + name;
+		new Classy(binary, program, flags);
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 3; i++) {
+			long start = System.nanoTime();
+			Process p = new ProcessBuilder("./" + binary).redirectErrorStream(true).start();
+			p.getInputStream().readAllBytes();
+			if (p.waitFor() != 0)
+				throw new RuntimeException(binary + " failed!");
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		new File(binary).delete();
+		return best / 1e6;
+	}
+
+}
@@ -0,0 +1,102 @@
+package benchmark;
+
+import java.util.Map;
+
+import classy.compiler.analyzing.Checker;
+import classy.compiler.analyzing.Optimizer;
+import classy.compiler.lexing.TableLexer;
+import classy.compiler.lexing.TokenStream;
+import classy.compiler.parsing.Parser;
+import classy.compiler.parsing.Value;
+
+/**
+ * Measures how optimization scales with the number of bindings in a program, up to 10,000.
+ * Four shapes of program are optimized:
+ * <ul>
+ * <li>chain: each binding uses the one before it once, so the chain folds into one literal</li>
+ * <li>unused: no binding is used, so each is removed</li>
+ * <li>shared: each binding uses the one before it twice, so it is not inlined, but propagated
+ * once it folds to a literal</li>
+ * <li>local: each binding is a function with a local binding, which can be inlined into it</li>
+ * </ul>
+ * Run with: java benchmark.OptimizerBenchmark
+ */
+public class OptimizerBenchmark {
+
+	public static void main(String[] args) throws InterruptedException {
+		// Checking the folded chain recurses for each binding
+		Thread run = new Thread(null, OptimizerBenchmark::run, "benchmark", 1L << 30);
+		run.start();
+		run.join();
+	}
+
+	protected static void run() {
+		for (String shape: new String[] {"chain", "unused", "shared", "local"}) {
+			for (int bindings: new int[] {100, 1_000, 10_000}) {
+				TokenStream tokens = new TableLexer(makeSource(shape, bindings)).getTokenStream();
+				// Optimizing changes the program in place, so each run must parse and check anew
+				long deadline = System.nanoTime() + 1_000_000_000L;
+				Optimizer last = null;
+				do {
+					Value program = new Parser(tokens).getProgram();
+					last = new Optimizer(new Checker(program), program);
+				}while (System.nanoTime() < deadline);
+				int runs = 0;
+				long elapsed = 0;
+				do {
+					Value program = new Parser(tokens).getProgram();
+					Checker check = new Checker(program);
+					// Leave nothing from parsing and checking to be collected during the run
+					System.gc();
+					long start = System.nanoTime();
+					new Optimizer(check, program);
+					elapsed += System.nanoTime() - start;
+					runs++;
+				}while (elapsed < 2_000_000_000L && runs < 200);
+				double micros = elapsed / 1e3 / runs;
+				System.out.printf("%-6s %6d bindings: %12.1f us per optimize, %8.3f us per binding %s%n",
+						shape, bindings, micros, micros / bindings, stats(last));
+			}
+		}
+	}
+
+	protected static String stats(Optimizer opt) {
+		StringBuffer buf = new StringBuffer();
+		for (Map.Entry<String, Integer> stat: opt.getStats().entrySet()) {
+			buf.append(' ');
+			buf.append(stat.getKey());
+			buf.append('=');
+			buf.append(stat.getValue());
+		}
+		return buf.toString();
+	}
+
+	protected static String makeSource(String shape, int bindings) {
+		if (shape.equals("local")) {
+			StringBuilder source = new StringBuilder();
+			StringBuilder calls = new StringBuilder("0");
+			for (int i = 0; i < bindings; i++) {
+				source.append("let f").append(i).append("(a) = {\n\tlet t = a + ").append(i);
+				source.append("\n\tt * 2\n}\n");
+				calls.append(" + f").append(i).append(" 1");
+			}
+			return source.append(calls).append('\n').toString();
+		}
+		StringBuilder source = new StringBuilder("let x0 = 1\n");
+		for (int i = 1; i < bindings; i++) {
+			source.append("let x").append(i).append(" = ");
+			if (shape.equals("chain"))
+				source.append("x").append(i - 1).append(" + 1\n");
+			else if (shape.equals("unused"))
+				source.append(i).append('\n');
+			else
+				source.append("x").append(i - 1).append(" + x").append(i - 1).append(" % 7\n");
+		}
+		if (shape.equals("unused"))
+			source.append("0\n");
+		else
+			source.append("x").append(bindings - 1).append('\n');
+		return source.toString();
+	}
+
+}
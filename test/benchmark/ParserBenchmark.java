@@ -0,0 +1,61 @@
+package benchmark;
+
+import classy.compiler.lexing.TableLexer;
+import classy.compiler.lexing.TokenStream;
+import classy.compiler.parsing.Parser;
+
+/**
+ * Measures how parsing scales with the nesting depth of blocks, from 10 to 10,000 deep. Each
+ * block holds one assignment and the next block, so the number of tokens grows linearly with
+ * the depth, and so should the time per parse.
+ * <p>
+ * Run with: java benchmark.ParserBenchmark
+ */
+public class ParserBenchmark {
+
+	public static void main(String[] args) throws InterruptedException {
+		// Parsing recurses for each nested block, which overflows the default stack
+		Thread run = new Thread(null, ParserBenchmark::run, "benchmark", 1L << 30);
+		run.start();
+		run.join();
+	}
+
+	protected static void run() {
+		for (int depth: new int[] {10, 100, 1_000, 10_000}) {
+			String source = makeSource(depth);
+			TokenStream tokens = new TableLexer(source).getTokenStream();
+			// warm up before any measurement
+			long deadline = System.nanoTime() + 1_000_000_000L;
+			while (System.nanoTime() < deadline)
+				new Parser(tokens);
+			int runs = 0;
+			long start = System.nanoTime();
+			long elapsed;
+			do {
+				new Parser(tokens);
+				runs++;
+				elapsed = System.nanoTime() - start;
+			}while (elapsed < 2_000_000_000L);
+			double micros = elapsed / 1e3 / runs;
+			System.out.printf("depth %6d (%7d tokens): %12.1f us per parse, %8.3f us per level%n",
+					depth, tokens.size(), micros, micros / depth);
+		}
+	}
+
+	protected static String makeSource(int depth) {
+		StringBuilder source = new StringBuilder("let x = ");
+		for (int i = 0; i < depth; i++) {
+			source.append("{\n\tlet a");
+			source.append(i);
+			source.append(" = (");
+			source.append(i);
+			source.append(", 1)\n");
+		}
+		source.append("0\n");
+		for (int i = 0; i < depth; i++)
+			source.append("}\n");
+		source.append("x\n");
+		return source.toString();
+	}
+
+}
@@ -0,0 +1,76 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import classy.compiler.Classy;
+
+/**
+ * Measures short circuiting of & and |. A loop finds an or whose right operand is a costly
+ * recursive call. Where the left decides the result on all but one of every 64 passes, the call
+ * should be made only on that one, and the loop should run many times faster than where the left
+ * never decides (which is how long both would take if the right were always found).
+ * <p>
+ * Must be run from the root of the project, with llc and gcc on the path.
+ * Run with: java benchmark.ShortCircuitBenchmark
+ */
+public class ShortCircuitBenchmark {
+
+	protected static final int PASSES = 2_000;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		double skipped = time("skipped", program("i % 64 <> 0"));
+		double forced = time("forced", program("i % 64 == 64"));
+		System.out.printf("%d passes: right skipped %8.1f ms, right found %8.1f ms%n", PASSES, skipped, forced);
+	}
+
+	/**
+	 * Creates the program, which counts the passes where the or holds.
+	 * @param left the left operand of the or, in terms of the pass i
+	 */
+	protected static List<String> program(String left) {
+		return List.of(
+			"let run(i, acc) = {",
+			"	let fib(n) = if n < 2",
+			"		n",
+			"	else",
+			"		fib(n - 1) + fib(n - 2)",
+			"	let holds(i) = (" + left + ") | (fib(i % 5 + 20) > 0)",
+			"	if i == 0",
+			"		acc",
+			"	else if holds(i)",
+			"		run(i - 1, acc + 1)",
+			"	else",
+			"		run(i - 1, acc)",
+			"}",
+			"run(" + PASSES + ", 0)"
+		);
+	}
+
+	/**
+	 * Compiles the program, and finds the best time of several runs. The calls are left for
+	 * runtime, rather than evaluated as the program is compiled.
+	 * @return the time in milliseconds
+	 */
+	protected static double time(String name, List<String> program) throws IOException, InterruptedException {
+		String binary = "bench-" + name;
+		Map<String, String> flags = new HashMap<>();
+		flags.put(Classy.EVAL, "0");
+		new Classy(binary, program, flags);
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 3; i++) {
+			long start = System.nanoTime();
+			Process p = new ProcessBuilder("./" + binary).redirectErrorStream(true).start();
+			p.getInputStream().readAllBytes();
+			if (p.waitFor() != 0)
+				throw new RuntimeException(binary + " failed!");
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		new File(binary).delete();
+		return best / 1e6;
+	}
+
+}
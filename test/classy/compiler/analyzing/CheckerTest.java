@@ -0,0 +1,94 @@
+package classy.compiler.analyzing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import classy.compiler.CompileException;
+import classy.compiler.lexing.TableLexer;
+import classy.compiler.parsing.Parser;
+import classy.compiler.parsing.Subexpression;
+import classy.compiler.parsing.Value;
+
+public class CheckerTest {
+
+	private List<Subexpression> parse(String source) {
+		Value value = new Parser(new TableLexer(source).getTokenStream()).getProgram();
+		// The expression may be nested in values which hold nothing else
+		while (value.getSubexpressions().size() == 1 && value.getSubexpressions().get(0) instanceof Value)
+			value = (Value)value.getSubexpressions().get(0);
+		return value.getSubexpressions();
+	}
+
+	/**
+	 * Groups the operations in the source with one pass, and then by level (as they were
+	 * grouped before), and expects the same result or error from both.
+	 */
+	private void expectSame(String source) {
+		List<Subexpression> byLevel;
+		List<Subexpression> onePass;
+		try {
+			byLevel = parse(source);
+			onePass = parse(source);
+		}catch(CompileException e) {
+			return; // the parser cannot make anything to group
+		}
+		assertEquals(group(true, byLevel), group(false, onePass), "Grouping differs for " + source);
+	}
+
+	private String group(boolean byLevel, List<Subexpression> sub) {
+		Checker check = new Checker();
+		try {
+			if (byLevel)
+				check.groupByLevel(sub);
+			else
+				check.groupOperations(sub);
+		}catch(CompileException e) {
+			return "error: " + e.getMessage();
+		}
+		StringBuffer buf = new StringBuffer();
+		for (Subexpression sexp: sub) {
+			buf.append(sexp.pretty(0));
+			buf.append(' ');
+		}
+		return buf.toString();
+	}
+
+	@Test
+	void grouping() {
+		assertEquals("(1 + (2 * 3)) ", group(false, parse("1 + 2 * 3")));
+		assertEquals("(((1 - 2) - 3) + 4) ", group(false, parse("1 - 2 - 3 + 4")));
+		assertEquals("(((! true) & 1) < (2 | false)) ", group(false, parse("!true & 1 < 2 | false")));
+		assertEquals("((- 1) * 2) ", group(false, parse("-(1) * 2")));
+		expectSame("1 * -2");
+		expectSame("1 + + 2");
+		expectSame("1 2 + 3");
+		expectSame("! ! true");
+		expectSame("3 -");
+	}
+
+	@Test
+	void random() {
+		String[] operands = {"1", "2", "true"};
+		String[] operators = {"+", "-", "*", "/", "%", "==", "<>", "<", "<=", ">", ">=", "&", "|", "!"};
+		Random rand = new Random(6);
+		for (int i = 0; i < 3000; i++) {
+			StringBuffer source = new StringBuffer();
+			int length = 2 + rand.nextInt(10);
+			for (int j = 0; j < length; j++) {
+				// Mostly alternate between operands and operators
+				boolean operand = (j % 2 == 0) != (rand.nextInt(6) == 0);
+				if (operand)
+					source.append(operands[rand.nextInt(operands.length)]);
+				else
+					source.append(operators[rand.nextInt(operators.length)]);
+				source.append(' ');
+			}
+			expectSame(source.toString());
+		}
+	}
+
+}
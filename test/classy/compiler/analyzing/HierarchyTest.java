@@ -0,0 +1,138 @@
+package classy.compiler.analyzing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import classy.compiler.lexing.TableLexer;
+import classy.compiler.parsing.Parser;
+import classy.compiler.parsing.Value;
+
+public class HierarchyTest {
+	Map<String, Type> types = new HashMap<>();
+
+	private Checker check(String... lines) {
+		Value program = new Parser(new TableLexer(String.join("\n", lines)).getTokenStream()).getProgram();
+		Checker check = new Checker(program);
+		types.clear();
+		for (Type type: check.getTypes())
+			types.put(type.getName(), type);
+		return check;
+	}
+
+	private Variable method(String type, String name) {
+		return types.get(type).getMethods().get(name);
+	}
+
+	@Test
+	void overrides() {
+		// The override of a descendant may be defined before the method it overrides
+		check(
+			"type Shape = side: Int",
+			"type Square isa Shape = void",
+			"type Cube isa Square = void",
+			"let Cube.area() = 6 * this.side * this.side",
+			"let Shape.area() = this.side",
+			"let Square.area() = this.side * this.side",
+			"Shape(2).area()");
+		Variable root = method("Shape", "area");
+		assertTrue(root.isOverridden());
+		assertEquals(List.of(method("Cube", "area"), method("Square", "area")), root.getOverrides());
+		assertEquals(types.get("Cube"), Hierarchy.receiverOf(method("Cube", "area")));
+	}
+
+	@Test
+	void parameterCount() {
+		assertThrows(CheckException.class, () -> check(
+			"type Foo = void",
+			"type Bar isa Foo = void",
+			"let Foo.get() = 1",
+			"let Bar.get(n) = n",
+			"Foo().get()"));
+	}
+
+	@Test
+	void externalities() {
+		// Variables used from outside are not counted as parameters, but an override must use
+		//  the same ones, since a call only gives those of the method it names
+		CheckException uses = assertThrows(CheckException.class, () -> check(
+			"let k = 5",
+			"type A = a: Int",
+			"type B isa A = void",
+			"let A.f() = this.a",
+			"let B.f() = this.a + k",
+			"A(1).f()"));
+		assertTrue(uses.getMessage().contains("uses \"k\" from outside"), uses.getMessage());
+		
+		check(
+			"let j = 2",
+			"let k = 5",
+			"type A = a: Int",
+			"type B isa A = void",
+			"let A.f(n) = this.a + j * k + n",
+			"let B.f(n) = k - j + n",
+			"B(A 1).f(3)");
+		Variable root = method("A", "f");
+		assertEquals(List.of(method("B", "f")), root.getOverrides());
+		ParameterType[] theirs = root.getType().getInputs();
+		ParameterType[] inputs = method("B", "f").getType().getInputs();
+		for (int i = 0; i < inputs.length; i++)
+			assertEquals(theirs[i].getName(), inputs[i].getName());
+	}
+	
+	@Test
+	void implementations() {
+		Checker check = check(
+			"type Shape = side: Int",
+			"type Square isa Shape = void",
+			"type Cube isa Square = void",
+			"type Tile isa Square = void",
+			"let Shape.area() = this.side",
+			"let Square.area() = this.side * this.side",
+			"let Cube.area() = 6 * this.side * this.side",
+			"let total(a: Shape, b: Shape) = a.area() + b.area()",
+			"total(Shape 2, Tile(Square(Shape 1)))");
+		Hierarchy all = new Hierarchy(check.getTypes(), null);
+		Variable area = method("Shape", "area");
+		// Without knowing which types have objects, any descendant may be the location
+		Map<Type, Variable> selected = all.implementations(area, types.get("Shape"));
+		assertEquals(4, selected.size());
+		assertEquals(method("Square", "area"), selected.get(types.get("Tile")));
+		assertNull(all.monomorphic(area, types.get("Square")));
+		assertEquals(method("Square", "area"), all.monomorphic(area, types.get("Tile")));
+		assertEquals(method("Cube", "area"), all.monomorphic(area, types.get("Cube")));
+
+		// Only Shape and Tile objects are made
+		Value program = new Parser(new TableLexer(String.join("\n",
+			"type Shape = side: Int",
+			"type Square isa Shape = void",
+			"type Cube isa Square = void",
+			"type Tile isa Square = void",
+			"let Shape.area() = this.side",
+			"let Square.area() = this.side * this.side",
+			"let Cube.area() = 6 * this.side * this.side",
+			"let sq(a: Square) = a.area()",
+			"sq(Tile(Square(Shape 1))) + Shape(2).area()")).getTokenStream()).getProgram();
+		check = new Checker(program);
+		types.clear();
+		for (Type type: check.getTypes())
+			types.put(type.getName(), type);
+		Reachability reach = new Optimizer(check, program, 0, 0, 0).getReachability();
+		Hierarchy made = new Hierarchy(check.getTypes(), reach);
+		area = method("Shape", "area");
+		assertEquals(method("Square", "area"), made.monomorphic(area, types.get("Square")));
+		assertNull(made.monomorphic(area, types.get("Shape")));
+		assertNull(made.monomorphic(area, types.get("Cube")));
+		assertTrue(reach.dispatches(method("Square", "area")));
+		assertFalse(reach.dispatches(method("Cube", "area")));
+	}
+
+}
@@ -3,16 +3,21 @@ package classy.compiler.analyzing;
 import static classy.compiler.util.ParsingUtil.makeProgram;
 import static classy.compiler.util.ParsingUtil.mockToken;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import classy.compiler.lexing.TableLexer;
 import classy.compiler.lexing.Token;
 import classy.compiler.parsing.Literal;
+import classy.compiler.parsing.Parser;
 import classy.compiler.parsing.Subexpression;
 import classy.compiler.parsing.Value;
 
@@ -95,5 +100,217 @@ public class OptimizerTest {
 		assertTrue(only instanceof Literal);
 		assertEquals("4", ((Literal)only).getToken().getValue());
 	}
+	
+	@Test
+	void worklist() {
+		Value program = new Parser(new TableLexer(String.join("\n",
+				"let x0 = 1",
+				"let x1 = x0 + 1",
+				"let x2 = x1 * 3",
+				"x2")).getTokenStream()).getProgram();
+		Checker check = new Checker(program);
+		opt = new Optimizer(check, program);
+		assertEquals("6", program.pretty(0));
+		assertTrue(check.getVariables().isEmpty());
+		assertEquals(3, opt.getStats().get("propagated"));
+		assertEquals(3, opt.getStats().get("removed"));
+		assertEquals(2, opt.getStats().get("folded"));
+		
+		// The function must be visited again once its local is inlined, and again once its block
+		//  is reduced. (The call is not inlined, so that the function remains.)
+		program = new Parser(new TableLexer(String.join("\n",
+				"let f(a) = {",
+				"	let t = a + 1",
+				"	t * 2",
+				"}",
+				"f 3")).getTokenStream()).getProgram();
+		check = new Checker(program);
+		opt = new Optimizer(check, program, 0, 0, 0);
+		assertEquals("let f(a) = ((a + 1) * 2)\nf(3)", program.pretty(0));
+		assertEquals(2, check.getVariables().size());
+		assertEquals(1, opt.getStats().get("inlined"));
+		assertEquals(5, opt.getStats().get("visited"));
+	}
+	
+	@Test
+	void inlining() {
+		// Both calls are inlined, after which the functions are unused and removed
+		Value program = new Parser(new TableLexer(String.join("\n",
+				"let sq(x) = x * x",
+				"let f(y) = sq(y) + 1",
+				"f 3")).getTokenStream()).getProgram();
+		Checker check = new Checker(program);
+		opt = new Optimizer(check, program);
+		assertEquals("10", program.pretty(0));
+		assertEquals(2, opt.getStats().get("inlined calls"));
+		assertEquals(2, opt.getStats().get("removed"));
+		
+		// A recursive function is not inlined into itself, but its helper is inlined into it
+		program = new Parser(new TableLexer(String.join("\n",
+				"let dec(a, by = 1) = a - by",
+				"let down(n) = if n < 1",
+				"	0",
+				"else",
+				"	down(dec n)",
+				"down 5")).getTokenStream()).getProgram();
+		check = new Checker(program);
+		opt = new Optimizer(check, program, Optimizer.INLINE_SIZE, Optimizer.INLINE_DEPTH, 0);
+		assertEquals(1, opt.getStats().get("inlined calls"));
+		assertTrue(program.pretty(0).contains("down((n - "), program.pretty(0));
+	}
+	
+	@Test
+	void propagation() {
+		// Each binding folds to a literal used more than once, and the branch not taken is pruned,
+		//  which removes the last use of the area
+		String source = String.join("\n",
+				"let width = 8",
+				"let height = width / 2",
+				"let debug = false",
+				"let scale(x) = x * width",
+				"let area = width * height",
+				"if debug",
+				"	area + scale height",
+				"else",
+				"	scale(2) + height");
+		Value program = new Parser(new TableLexer(source).getTokenStream()).getProgram();
+		Checker check = new Checker(program);
+		opt = new Optimizer(check, program, 0, 0, 0);
+		// The function is given the width as an implicit parameter, which is replaced too
+		assertEquals("let scale(x, &width = width) = (x * 8)\n(scale(2, 8) + 4)", program.pretty(0));
+		assertEquals(4, opt.getStats().get("removed"));
+		assertEquals(1, opt.getStats().get("pruned"));
+		
+		program = new Parser(new TableLexer(source).getTokenStream()).getProgram();
+		opt = new Optimizer(new Checker(program), program);
+		assertEquals("20", program.pretty(0));
+	}
+	
+	@Test
+	void elimination() {
+		// Repeats are bound in the region where they are found, so nothing is evaluated before
+		//  the branch which needs it. The larger repeat is bound, not the smaller within it.
+		Value program = new Parser(new TableLexer(String.join("\n",
+				"let k(a, b) = if a > b",
+				"	(a - b) * (a - b) + (a - b)",
+				"else",
+				"	(a + b + 1) * 2 + (a + b + 1) + b",
+				"k(2, 7) + k(9, 4) + k(2, 7)")).getTokenStream()).getProgram();
+		Checker check = new Checker(program);
+		opt = new Optimizer(check, program, 0, 0, 0);
+		assertEquals(String.join("\n",
+				"let k(a, b) = if (a > b)",
+				"    {",
+				"      let +cse0 = (a - b)",
+				"      ((+cse0 * +cse0) + +cse0)",
+				"    }",
+				"  else",
+				"    {",
+				"      let +cse1 = ((a + b) + 1)",
+				"      (((+cse1 * 2) + +cse1) + b)",
+				"    }",
+				"let +cse2 = k(2, 7)",
+				"((+cse2 + k(9, 4)) + +cse2)"), program.pretty(0));
+		assertEquals(4, opt.getStats().get("eliminated"));
+	}
+	
+	@Test
+	void evaluation() {
+		// Calls with literal arguments are found at compile time, unless that takes too long, or
+		//  the call would fail
+		Value program = new Parser(new TableLexer(String.join("\n",
+				"let sum3(a, b, c) = a + b + c",
+				"let pascal(row, col) = if (col == 0) | (col == row)",
+				"	1",
+				"else",
+				"	pascal(row - 1, col - 1) + pascal(row - 1, col)",
+				"let spin(n) = if n < 0",
+				"	0",
+				"else",
+				"	1 + spin(n + 1)",
+				"let broken(n) = n / 0",
+				"sum3(1, 2, 3) + pascal(10, 5) + spin(1) + broken(4)")).getTokenStream()).getProgram();
+		Checker check = new Checker(program);
+		opt = new Optimizer(check, program, 0, 0);
+		assertEquals(String.join("\n",
+				"let spin(n) = if (n < 0)",
+				"    0",
+				"  else",
+				"    (1 + spin((n + 1)))",
+				"let broken(n) = (n / 0)",
+				"((258 + spin(1)) + broken(4))"), program.pretty(0));
+		assertEquals(2, opt.getStats().get("evaluated"));
+		
+		// Arguments are folded before the call is evaluated, and a function may be given
+		program = new Parser(new TableLexer(String.join("\n",
+				"let sq(x) = x * x",
+				"let twice(x) = sq(sq(x))",
+				"twice(1 + 2)")).getTokenStream()).getProgram();
+		check = new Checker(program);
+		opt = new Optimizer(check, program, 0, 0);
+		assertEquals("81", program.pretty(0));
+	}
+	
+	@Test
+	void shortCircuit() {
+		// The right of an and or or is not folded (nor its calls evaluated) where the left decides
+		//  the result, and a division by 0 is left for runtime
+		Value program = new Parser(new TableLexer(String.join("\n",
+				"let spin(n) = if n < 0",
+				"	0",
+				"else",
+				"	1 + spin(n + 1)",
+				"let half(n) = n / 2",
+				"let f(n) = (n > 0) & (4 / 0 > half(n))",
+				"((1 < 2) | (spin(1) > 0)) & !((2 < 1) & (4 / 0 > half(4))) & f(0)")).getTokenStream()).getProgram();
+		Checker check = new Checker(program);
+		opt = new Optimizer(check, program, 0, 0);
+		// Only the call to f is evaluated, which skips the division just the same
+		assertEquals("false", program.pretty(0));
+		assertEquals(1, opt.getStats().get("evaluated"));
+	}
+	
+	@Test
+	void reachability() {
+		// The recursive function and its helper are still used by each other, and the unused
+		//  types have a method and a descendant, but nothing of them is reached from the result
+		Value program = new Parser(new TableLexer(String.join("\n",
+				"type Point = (x: Int, y: Int)",
+				"type Unused = (a: Int, b: Bool)",
+				"type Sub isa Unused = c: Int",
+				"let Unused.twice() = this.a + this.a",
+				"let half(n) = n / 2",
+				"let steps(n) = if n <= 1",
+				"	0",
+				"else",
+				"	1 + steps(half n)",
+				"let Point.sum() = this.x + this.y",
+				"let p = Point(3, 4)",
+				"p.sum()")).getTokenStream()).getProgram();
+		Checker check = new Checker(program);
+		opt = new Optimizer(check, program, 0, 0);
+		Map<String, Type> types = new HashMap<>();
+		for (Type type: check.getTypes())
+			types.put(type.getName(), type);
+		Reachability reach = opt.getReachability();
+		assertTrue(reach.instantiates(types.get("Point")));
+		assertTrue(reach.instantiates(Type.Int));
+		assertFalse(reach.instantiates(types.get("Unused")));
+		assertFalse(reach.uses(types.get("Sub")));
+		assertFalse(reach.instantiates(Type.Bool));
+		assertTrue(reach.reaches(types.get("Point").getMethods().get("sum")));
+		assertFalse(reach.reaches(types.get("Unused").getMethods().get("twice")));
+		// Only the override to print integers could be selected when the result is printed
+		for (Variable print: Type.Any.getMethods().get("..print").getOverrides()) {
+			Type thisType = print.getType().getInputs()[0].getType();
+			assertEquals(thisType == Type.Int, reach.dispatches(print), thisType.getName());
+		}
+		// Methods are kept by their types, so only the recursive function and the types remain
+		//  to be removed once the unused bindings are
+		assertEquals(String.join("\n",
+				"type Point = (x: Int, y: Int)",
+				"Point(3, 4).sum(Point(3, 4))"), program.pretty(0));
+		assertEquals(3, opt.getStats().get("unreachable"));
+	}
 
 }
@@ -0,0 +1,119 @@
+package classy.compiler.analyzing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import classy.compiler.lexing.TableLexer;
+import classy.compiler.parsing.Parser;
+
+public class TypeTest {
+
+	private Map<String, Type> define(String source) {
+		Checker check = new Checker(new Parser(new TableLexer(source).getTokenStream()).getProgram());
+		Map<String, Type> types = new HashMap<>();
+		for (Type type: check.getTypes())
+			types.put(type.getName(), type);
+		return types;
+	}
+
+	/**
+	 * Decides whether the child is a descendant of the parent by walking the parents, as
+	 * {@link Type#isa(Type)} did before the hierarchy was frozen.
+	 */
+	private boolean walk(Type child, Type parent) {
+		if (child == parent)
+			return true;
+		if (child.getParents() != null) {
+			for (Type p: child.getParents()) {
+				if (walk(p, parent))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	void diamond() {
+		Map<String, Type> types = define(String.join("\n",
+				"type A = void",
+				"type B isa A = void",
+				"type C isa A = void",
+				"type D isa B, C = void",
+				"true"));
+		Type a = types.get("A"), b = types.get("B"), c = types.get("C"), d = types.get("D");
+		for (Type one: types.values()) {
+			for (Type two: types.values())
+				assertEquals(walk(one, two), one.isa(two), one + " isa " + two);
+		}
+		assertEquals(a, b.intersect(c));
+		assertEquals(c, d.intersect(c));
+		assertEquals(b, b.intersect(d));
+		assertEquals(Type.Any, d.intersect(Type.Int));
+		assertEquals(Type.Any, Type.Any.intersect(Type.Bool));
+		assertEquals(Type.Any, Type.Int.intersect(Type.Bool));
+		assertEquals(d, d.intersect(d));
+	}
+
+	@Test
+	void deep() {
+		// Enough types that the ancestor sets take more than one word
+		StringBuffer source = new StringBuffer("type T0 = void\n");
+		for (int i = 1; i < 150; i++)
+			source.append("type T" + i + " isa T" + (i - 1) + " = void\n");
+		source.append("type U isa T3 = void\ntype V isa T100, Bool = void\ntrue");
+		Map<String, Type> types = define(source.toString());
+		Type t149 = types.get("T149"), u = types.get("U"), v = types.get("V");
+		assertTrue(t149.isa(types.get("T0")));
+		assertTrue(t149.isa(Type.Any));
+		assertFalse(types.get("T0").isa(t149));
+		assertTrue(v.isa(Type.Bool));
+		assertFalse(u.isa(types.get("T4")));
+		assertEquals(types.get("T70"), t149.intersect(types.get("T70")));
+		assertEquals(types.get("T3"), u.intersect(t149));
+		assertEquals(types.get("T100"), t149.intersect(v));
+		assertEquals(Type.Bool, v.intersect(Type.Bool));
+		assertEquals(Type.Any, u.intersect(Type.Bool));
+	}
+
+	@Test
+	void members() {
+		StringBuffer source = new StringBuffer("type T0 = (f0: Int, g: Int)\n");
+		for (int i = 1; i < 100; i++)
+			source.append("type T" + i + " isa T" + (i - 1) + " = f" + i + ": Int\n");
+		source.append("type U = (g: Bool, u: Int)\ntype V isa U, T99 = void\n");
+		source.append("let T50.m() = 1\ntrue");
+		Map<String, Type> types = define(source.toString());
+		Type t0 = types.get("T0"), t99 = types.get("T99"), u = types.get("U"), v = types.get("V");
+		Member f0 = t99.getMember("f0");
+		assertEquals(t0, f0.getOwner());
+		assertEquals(1, f0.getSlot());
+		assertEquals(2, t99.getMember("g").getSlot());
+		assertEquals(types.get("T42"), t99.getMember("f42").getOwner());
+		assertEquals(2, t99.getMember("f42").getSlot());
+		assertEquals(types.get("T50"), t99.getMember("m").getOwner());
+		assertEquals(null, types.get("T49").getMember("m"));
+		assertFalse(t99.getMember("m").isField());
+		// Methods may be given to a type after its descendants are looked up
+		t0.addMethod(new Variable("m", null, null));
+		assertEquals(types.get("T50"), t99.getMember("m").getOwner());
+		assertEquals(t0, types.get("T49").getMember("m").getOwner());
+		// Earlier parents come first
+		assertEquals(u, v.getMember("g").getOwner());
+		assertEquals(2, v.getMember("u").getSlot());
+		assertEquals(t0, v.getMember("f0").getOwner());
+		assertEquals(null, t99.getMember("u"));
+		// Only the descendants of the type given a member find their members again
+		Map<String, Member> found = t99.getMembers();
+		u.addMethod(new Variable("n", null, null));
+		assertSame(found, t99.getMembers());
+		assertEquals(u, v.getMember("n").getOwner());
+	}
+
+}
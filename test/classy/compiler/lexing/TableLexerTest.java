@@ -0,0 +1,196 @@
+package classy.compiler.lexing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Differential tests between the {@link TableLexer} and the processor chain of {@link Lexer},
+ * which the table lexer must match token for token (and error for error), both when trivia is
+ * kept and when it is cleaned.
+ */
+public class TableLexerTest {
+
+	private String lexWith(boolean table, List<String> lines) {
+		if (table)
+			return lexWith(() -> new TableLexer(lines, true).getTokens());
+		return lexWith(() -> new Lexer(lines).getTokens());
+	}
+
+	private String lexWith(Supplier<List<Token>> lexer) {
+		List<Token> tokens;
+		try {
+			tokens = lexer.get();
+		}catch(LexException e) {
+			StringBuffer buf = new StringBuffer("error: ");
+			buf.append(e.getMessage());
+			if (e.getCause() != null) {
+				buf.append(" caused by ");
+				buf.append(e.getCause().getMessage());
+			}
+			return buf.toString();
+		}
+		StringBuffer buf = new StringBuffer();
+		for (Token token: tokens) {
+			buf.append(token);
+			buf.append('\n');
+		}
+		return buf.toString();
+	}
+
+	private void expectSame(String... lines) {
+		List<String> ls = List.of(lines);
+		assertEquals(lexWith(false, ls), lexWith(true, ls), "Lexing differs for " + ls);
+		assertEquals(lexWith(() -> clean(new Lexer(ls).getTokens())),
+				lexWith(() -> new TableLexer(ls).getTokens()), "Cleaning differs for " + ls);
+	}
+
+	/**
+	 * Cleans the tokens as the compiler did before the lexer did it.
+	 */
+	private List<Token> clean(List<Token> tokens) {
+		List<Token> cleaned = new ArrayList<>();
+		boolean lastNewLine = true;
+		for (Token token: tokens) {
+			if (token.getType() == Token.Type.SPACE || token.getType() == Token.Type.COMMENT)
+				continue;
+			if (token.getType() == Token.Type.NEW_LINE) {
+				if (!lastNewLine)
+					cleaned.add(new Token(token.getValue(), Token.Type.SEMICOLON,
+							token.getLineNo(), token.getColNo()));
+				lastNewLine = true;
+			}else {
+				cleaned.add(token);
+				lastNewLine = false;
+			}
+		}
+		return cleaned;
+	}
+
+	/**
+	 * Lexing a whole source must be the same as lexing the lines that {@link Scanner} reads
+	 * from it.
+	 */
+	private void expectSameSource(CharSequence source) {
+		List<String> lines = new ArrayList<>();
+		Scanner scan = new Scanner(source.toString());
+		while (scan.hasNextLine())
+			lines.add(scan.nextLine());
+		scan.close();
+		assertEquals(lexWith(false, lines), lexWith(() -> new TableLexer(source, true).getTokens()),
+				"Lexing differs for " + lines);
+	}
+
+	@Test
+	void program() {
+		expectSame(
+			"let sum3or5(max) = {",
+			"	if max < 3",
+			"		0",
+			"	sum3or5(max - 1) + \\",
+			"	if (max % 3 == 0) | (max % 5 == 0)",
+			"		max",
+			"	else",
+			"		0",
+			"}",
+			"sum3or5 10 # with a comment"
+		);
+		expectSame("type Foo isa Bar = (num: Int, used = !true & false)", "let Foo.get() = this.num");
+		expectSame("a <> b <= c >= d == e = f < g > h");
+	}
+
+	@Test
+	void numbers() {
+		expectSame("-2 -x 5. 5.. 5.3.2 .5 -.5 -. - . x.5 3-5 -5..");
+		expectSame("1.");
+		expectSame("..2");
+	}
+
+	@Test
+	void comments() {
+		expectSame("#| one", " | two", " |# three", "four");
+		expectSame("#| nested #| comment |# still |# after |# ");
+		expectSame("#| open", "", "", "|# closed", "x");
+		expectSame("#| a |# b #| c", "d |# e");
+		expectSame("#|", "never closed");
+		expectSame("#", "##|", "#||#");
+	}
+
+	@Test
+	void whitespace() {
+		expectSame("a \\", "  b");
+		expectSame("a \\", "", "b");
+		expectSame("\\", "\\", "c");
+		expectSame("a\\b");
+		expectSame("trailing \\");
+		expectSame("\t\u000B\f\r x");
+	}
+
+	@Test
+	void errors() {
+		expectSame("let x = 5 $ 4");
+		expectSame("f(a))");
+		expectSame("(1 +", "2)");
+	}
+
+	@Test
+	void lineTerminators() {
+		expectSameSource("let x = 5\r\nlet y = x \\\r\n\r\n + 1\ry\r\n");
+		expectSameSource("#| a\r\rb |# c\u2028#| d\u2029\u0085|# e\r");
+		expectSameSource("#| a\r\nb\r\n|# |#\r\n");
+		expectSameSource("\\\r\n\\");
+	}
+
+	@Test
+	void bytes() {
+		String text = "let f(x) = x * 2\r\nf(4) # comment\n";
+		CharSequence source = ByteSource.of(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)));
+		assertTrue(source instanceof ByteSource);
+		assertEquals(text, source.toString());
+		assertEquals("x * 2", source.subSequence(11, 16));
+		expectSameSource(source);
+
+		// Anything other than ASCII is decoded first
+		byte[] other = {'a', ' ', (byte)0xC3, (byte)0xA9};
+		assertFalse(ByteSource.of(ByteBuffer.wrap(other)) instanceof ByteSource);
+	}
+
+	@Test
+	void random() {
+		// Mostly valid characters, with some that will end in errors
+		String alphabet = "ab_1234567890 \t\\#|-.=<>(){},;:+*/!%&\u00E9\u0663";
+		Random rand = new Random(2021);
+		for (int i = 0; i < 2000; i++) {
+			int numLines = 1 + rand.nextInt(4);
+			List<String> lines = new ArrayList<>();
+			for (int j = 0; j < numLines; j++) {
+				StringBuffer line = new StringBuffer();
+				int length = rand.nextInt(12);
+				for (int k = 0; k < length; k++)
+					line.append(alphabet.charAt(rand.nextInt(alphabet.length())));
+				lines.add(line.toString());
+			}
+			expectSame(lines.toArray(new String[] {}));
+		}
+
+		String breaking = alphabet + "\n\r\r\n\u2028\u0085";
+		for (int i = 0; i < 2000; i++) {
+			StringBuffer source = new StringBuffer();
+			int length = rand.nextInt(30);
+			for (int k = 0; k < length; k++)
+				source.append(breaking.charAt(rand.nextInt(breaking.length())));
+			expectSameSource(source);
+		}
+	}
+
+}
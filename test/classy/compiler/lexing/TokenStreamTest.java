@@ -0,0 +1,41 @@
+package classy.compiler.lexing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class TokenStreamTest {
+
+	@Test
+	void values() {
+		String source = "let x = 12";
+		TokenStream stream = new TokenStream(source, 1);
+		stream.add(Token.Type.LET, 0, 3, 1, 3);
+		stream.add(Token.Type.IDENTIFIER, 4, 5, 1, 5);
+		stream.add(Token.Type.ASSIGN, 6, 7, 1, 7);
+		stream.add(Token.Type.NUMBER, 8, 10, 1, 10);
+		stream.add(Token.Type.NEW_LINE, TokenStream.LINE_BREAK, 1, 10);
+
+		assertEquals(5, stream.size());
+		assertEquals("let", stream.getValue(0));
+		assertEquals("12", stream.getValue(3));
+		assertEquals(Token.Type.NUMBER, stream.getType(3));
+		assertEquals("\\n", stream.getValue(4));
+		assertEquals("Token(IDENTIFIER \"x\" at 1:5)", stream.get(1).toString());
+	}
+
+	@Test
+	void copy() {
+		List<Token> tokens = List.of(new Token("a", Token.Type.IDENTIFIER, 1, 1),
+				new Token("\\n", Token.Type.SEMICOLON, 1, 1),
+				new Token("b", Token.Type.IDENTIFIER, 2, 1));
+		TokenStream stream = TokenStream.of(tokens);
+
+		assertEquals(3, stream.size());
+		assertEquals("Token(SEMICOLON \"\\n\" at 1:1)", stream.get(1).toString());
+		assertEquals("b", stream.asList().get(2).getValue());
+	}
+
+}
@@ -0,0 +1,84 @@
+package classy.compiler.parsing;
+
+import static classy.compiler.util.ParsingUtil.mockToken;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import classy.compiler.lexing.Token;
+
+public class TokenIteratorTest {
+
+	/**
+	 * Finds the expected type by scanning, which is how {@link TokenIterator#find} worked
+	 * before the scope index.
+	 */
+	private int scan(List<Token> tokens, int index, Token.Type expected, int end) {
+		int scope = 0;
+		for (int i = index; i < end; i++) {
+			Token.Type type = tokens.get(i).getType();
+			if (scope == 0 && type == expected)
+				return i;
+			else if (type == Token.Type.CLOSE_BRACE || type == Token.Type.CLOSE_PAREN) {
+				if (scope > 0)
+					scope--;
+				else {
+					if (expected == Token.Type.SEMICOLON)
+						return i;
+					return -1;
+				}
+			}else if (type == Token.Type.OPEN_BRACE || type == Token.Type.OPEN_PAREN)
+				scope++;
+		}
+		return -1;
+	}
+
+	@Test
+	void find() {
+		List<Token> tokens = List.of(mockToken(Token.Type.OPEN_BRACE),
+				mockToken(Token.Type.IDENTIFIER),
+				mockToken(Token.Type.OPEN_PAREN),
+				mockToken(Token.Type.COMMA),
+				mockToken(Token.Type.CLOSE_PAREN),
+				mockToken(Token.Type.COMMA),
+				mockToken(Token.Type.CLOSE_BRACE));
+		TokenIterator it = new TokenIterator(tokens, 1);
+		assertEquals(5, it.find(Token.Type.COMMA, tokens.size()));
+		assertEquals(6, it.find(Token.Type.CLOSE_BRACE, tokens.size()));
+		assertEquals(-1, it.find(Token.Type.CLOSE_PAREN, tokens.size()));
+		assertEquals(6, it.findBreak(tokens.size()));
+		assertEquals(-1, it.find(Token.Type.COMMA, 5));
+		it.setIndex(3);
+		assertEquals(3, it.find(Token.Type.COMMA, tokens.size()));
+		assertEquals(4, it.find(Token.Type.CLOSE_PAREN, tokens.size()));
+	}
+
+	@Test
+	void random() {
+		Token.Type[] types = {Token.Type.OPEN_PAREN, Token.Type.CLOSE_PAREN, Token.Type.OPEN_BRACE,
+				Token.Type.CLOSE_BRACE, Token.Type.COMMA, Token.Type.SEMICOLON, Token.Type.ASSIGN,
+				Token.Type.IDENTIFIER, Token.Type.COLON};
+		Random rand = new Random(5);
+		for (int i = 0; i < 500; i++) {
+			List<Token> tokens = new ArrayList<>();
+			int size = rand.nextInt(30);
+			for (int j = 0; j < size; j++)
+				tokens.add(mockToken(types[rand.nextInt(types.length)]));
+			TokenIterator it = new TokenIterator(tokens);
+			for (int index = 0; index <= size; index++) {
+				it.setIndex(index);
+				for (int end = index; end <= size; end++) {
+					for (Token.Type expected: types) {
+						String message = "Finding " + expected + " from " + index + " to " + end;
+						assertEquals(scan(tokens, index, expected, end), it.find(expected, end), message);
+					}
+				}
+			}
+		}
+	}
+
+}
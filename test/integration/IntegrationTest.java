@@ -156,6 +156,20 @@ class IntegrationTest {
 		expectFromProgram(lines, 1);
 	}
 	
+	@Test
+	void externalities() {
+		List<String> lines = List.of(
+			"let base = 10",
+			"let f(y) = y + base",
+			"let z = {",
+			"	let base = 100",
+			"	f(1) + base",
+			"}",
+			"z"
+		);
+		expectFromProgram(lines, 111);
+	}
+	
 	@Test
 	void paramDefaultValue() {
 		List<String> lines = List.of(
@@ -208,6 +222,82 @@ class IntegrationTest {
 		expectFromProgram(lines, "5");
 	}
 	
+	@Test
+	void nestedIfs() {
+		// The result of each if is joined from the last block of each branch
+		List<String> lines = List.of(
+			"let f(n) = {",
+			"	let s = if n < 0",
+			"		-1",
+			"	else",
+			"		if n == 0",
+			"			0",
+			"		else",
+			"			if n > 100",
+			"				2",
+			"			else",
+			"				1",
+			"	s * 10 + n",
+			"}",
+			"f(-5) + f(0) * 1000 + f(7) * 10 + f(500)"
+		);
+		expectFromProgram(lines, "675");
+		Map<String, String> flags = new HashMap<>();
+		flags.put(Classy.EVAL, "0");
+		expectFromProgram(lines, "675", flags);
+	}
+	
+	@Test
+	void fusedConditions() {
+		// The division is only made where the divisor is not 0
+		List<String> lines = List.of(
+			"let f(n) = if ((n <> 0) & (12 / n > 2)) | ((n == 0) & !(n > 0))",
+			"	1",
+			"else",
+			"	0",
+			"f(0) + f(3) * 10 + f(6) * 100 + f(-3) * 1000"
+		);
+		expectFromProgram(lines, "11");
+		Map<String, String> flags = new HashMap<>();
+		flags.put(Classy.EVAL, "0");
+		expectFromProgram(lines, "11", flags);
+		flags.put(Classy.BOXED, null);
+		expectFromProgram(lines, "11", flags);
+	}
+	
+	@Test
+	void shortCircuit() {
+		// Each result is found as a value, and the division is only made where the left allows
+		List<String> lines = List.of(
+			"let f(n) = (n <> 0) & (12 / n > 2)",
+			"let g(n) = (n == 0) | (12 / n < 0)",
+			"f(0) | (f(3) & g(0) & !g(4))"
+		);
+		expectFromProgram(lines, "true");
+		Map<String, String> flags = new HashMap<>();
+		flags.put(Classy.EVAL, "0");
+		expectFromProgram(lines, "true", flags);
+		flags.put(Classy.INLINE, "0");
+		expectFromProgram(lines, "true", flags);
+		flags.put(Classy.BOXED, null);
+		expectFromProgram(lines, "true", flags);
+	}
+	
+	@Test
+	void longLiteral() {
+		// An integer too large for 32 bits wraps around, whether it is folded or found at runtime
+		List<String> lines = List.of(
+			"let f(x) = x * 2",
+			"f(99999999999)"
+		);
+		expectFromProgram(lines, "-1863462914");
+		Map<String, String> flags = new HashMap<>();
+		flags.put(Classy.INLINE, "0");
+		expectFromProgram(lines, "-1863462914", flags);
+		flags.put(Classy.EVAL, "0");
+		expectFromProgram(lines, "-1863462914", flags);
+	}
+	
 	@Test
 	void userTypeFunction() {
 		List<String> lines = List.of(
@@ -262,6 +352,17 @@ class IntegrationTest {
 		expectFromProgram(lines, "1");
 	}
 	
+	@Test
+	void inheritFields() {
+		List<String> lines = List.of(
+			"type Foo = (a: Int, b: Int, c: Int)",
+			"type Bar isa Foo = (d: Int, e: Int)",
+			"let bar = Bar(Foo(1, 2, 3), 4, 5)",
+			"bar.a * 10000 + bar.b * 1000 + bar.c * 100 + bar.d * 10 + bar.e"
+		);
+		expectFromProgram(lines, "12345");
+	}
+	
 	@Test
 	void useAsBool() {
 		List<String> lines = List.of(
@@ -313,6 +414,134 @@ class IntegrationTest {
 		expectFromProgram(lines, "5");
 	}
 	
+	@Test
+	void inlinedHelpers() {
+		List<String> lines = List.of(
+			"let f(x, y = 2) = {",
+			"	let sq(a) = a * a",
+			"	sq(x + 1) + sq(y) + x",
+			"}",
+			"f(3) + f(x = 1, y = 4)"
+		);
+		
+		expectFromProgram(lines, "44");
+	}
+	
+	@Test
+	void tailRecursion() {
+		// Deep enough to overflow the stack if each call took a frame
+		List<String> lines = List.of(
+			"let count(n, acc) = if n == 0",
+			"	acc",
+			"else",
+			"	count(n - 1, acc + 2)",
+			"count(1000000, 0)"
+		);
+		
+		expectFromProgram(lines, "2000000");
+	}
+	
+	@Test
+	void memoized() {
+		// Far too many calls to finish without saving the results of each
+		List<String> lines = List.of(
+			"let choose(n, k, odd) = if (k == 0) | (k == n)",
+			"	if odd",
+			"		1",
+			"	else",
+			"		2",
+			"else",
+			"	choose(n - 1, k - 1, !odd) + choose(n - 1, k, odd) % 1000",
+			"choose(40, 20, true)"
+		);
+		Map<String, String> flags = new HashMap<>();
+		flags.put(Classy.MEMO, null);
+		expectFromProgram(lines, "8404", flags);
+	}
+	
+	@Test
+	void unboxedValues() {
+		// Integers and booleans are passed as values, except to the fields of objects
+		List<String> lines = List.of(
+			"type Box = (v: Int, on: Bool)",
+			"let pick(b: Box, x, flip) = if flip & b.on",
+			"	b.v + x",
+			"else",
+			"	x * 2",
+			"let twice(n): Int = if n > 100",
+			"	n",
+			"else",
+			"	twice(n * 2)",
+			"let y = pick(Box(3, true), 4, !false)",
+			"y + pick(Box(5, false), 1, true) + twice(y)"
+		);
+		
+		expectFromProgram(lines, "121");
+		Map<String, String> flags = new HashMap<>();
+		flags.put(Classy.BOXED, null);
+		expectFromProgram(lines, "121", flags);
+	}
+	
+	@Test
+	void deepInheritance() {
+		// Fields are found through several parents, which may be of descendant types
+		List<String> lines = List.of(
+			"type A = a: Int",
+			"type B = b: Int",
+			"type C isa A, B = c: Int",
+			"type D isa C = d: Int",
+			"let getA(x: A) = x.a",
+			"let getB(x: B) = x.b",
+			"let d = D(C(A 1, B 2, 3), 4)",
+			"let c = C(A 10, B 20, 30)",
+			"getA(d) + getA(c) + getB(d) * 100 + getB(c) * 1000 + d.b * 100000 + c.c"
+		);
+		
+		expectFromProgram(lines, "220241");
+	}
+	
+	@Test
+	void methodParameters() {
+		// The object follows the explicit parameters of a method, and the variables it uses from
+		//  outside follow the object
+		List<String> lines = List.of(
+			"let j = 2",
+			"let k = 5",
+			"type A = a: Int",
+			"type B isa A = void",
+			"let A.f(n) = this.a + j * k + n",
+			"let B.f(n) = k - j + n",
+			"let call(x: A, n) = x.f(n)",
+			"call(A 1, 3) * 100 + call(B(A 1), 4)"
+		);
+		// Not unoptimized, where call would have to pass on the j and k that x.f uses, which a
+		//  function cannot yet do for the calls it makes
+		Map<String, String> flags = new HashMap<>();
+		expectFromProgram(lines, "1407", flags);
+		flags.put(Classy.EVAL, "0");
+		flags.put(Classy.INLINE, "0");
+		expectFromProgram(lines, "1407", flags);
+	}
+	
+	@Test
+	void overriddenMethods() {
+		// Each object selects the most specific implementation, whatever the type it is known by
+		List<String> lines = List.of(
+			"type Shape = side: Int",
+			"type Square isa Shape = void",
+			"type Cube isa Square = void",
+			"type Tile isa Square = void",
+			"let Cube.area() = 6 * this.side * this.side",
+			"let Shape.area() = this.side",
+			"let Square.area() = this.side * this.side",
+			"let total(a: Shape, b: Shape, c: Shape, d: Shape) = a.area() + b.area() + c.area() + d.area()",
+			"let tile = Tile(Square(Shape 5))",
+			"total(Shape 2, Square(Shape 3), Cube(Square(Shape 4)), Tile(Square(Shape 1))) * 1000 + tile.area()"
+		);
+		
+		expectFromProgram(lines, "108025");
+	}
+	
 	protected ProcessResult runProcess(List<String> cmd) {
 		ProcessBuilder processBuilder = new ProcessBuilder(cmd);
 		processBuilder.redirectErrorStream(true);